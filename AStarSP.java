@@ -0,0 +1,168 @@
+/*************************************************************************
+ *  Compilation:  javac AStarSP.java
+ *  Execution:    java AStarSP graph1.txt
+ *  Dependencies: Graph.java Landmarks.java DoubleIndexMinPQ.java
+ *                Stack.java DirectedEdge.java ShortestPaths.java
+ *
+ *  Goal-directed Dijkstra (A*) for a single s->t query, with the lower
+ *  bounds on the distance to t taken from Landmarks. Vertices come off
+ *  the queue by distTo[v] + bound(v), so the search heads toward t
+ *  instead of growing a ball around s. The bounds are consistent, so
+ *  each vertex is still settled once and distTo[t] is exact when t is
+ *  removed from the queue.
+ *
+ *  Only the few landmarks with the best bound from s are used for a
+ *  query; the others rarely tighten the bound but cost as much to
+ *  evaluate. Stale landmarks are not trusted: the search then runs as
+ *  plain Dijkstra, still exact but without the speedup.
+ *
+ *************************************************************************/
+
+public class AStarSP implements ShortestPaths {
+    private static final int ACTIVE = 4;    // landmarks used per query
+
+    private double[] distTo;         // distTo[v] = length of shortest s->v path found so far
+    private int[] edgeTo;            // edgeTo[v] = slot of last edge on that path, -1 if none
+    private double[] bound;          // bound[v] = lower bound on the v->t distance, NaN until computed
+    private DoubleIndexMinPQ pq;
+    private Landmarks L;
+    private int[] active;            // landmarks used for this query
+    private final int s;
+    private final int t;
+    private Graph G;                 // slots in edgeTo[] refer to G
+
+    public AStarSP(Graph G, Landmarks L, int s, int t) {
+        this.G = G;
+        this.L = L;
+        this.s = s;
+        this.t = t;
+        distTo = new double[G.V()];
+        edgeTo = new int[G.V()];
+        bound = new double[G.V()];
+        for (int v = 0; v < G.V(); v++) {
+            distTo[v] = Double.POSITIVE_INFINITY;
+            edgeTo[v] = -1;
+            bound[v] = Double.NaN;
+        }
+        distTo[s] = 0.0;
+        if (!G.checkConnection(s) || !G.checkConnection(t)) return;
+
+        active = L.isStale() ? new int[0] : activeLandmarks();
+        if (bound(s) == Double.POSITIVE_INFINITY) return;   // a landmark proves t unreachable
+
+        pq = new DoubleIndexMinPQ(G.V(), DoubleIndexMinPQ.arity(G.V(), G.E()));
+        pq.insert(s, bound(s));
+        while (!pq.isEmpty()) {
+            int v = pq.delMin();
+            if (v == t) break;
+            for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+                int w = G.to(e);
+                if (G.checkConnection(w)) relax(v, e, w);
+            }
+        }
+    }
+
+    // relax edge e from v to w, keyed by distance plus bound
+    private void relax(int v, int e, int w) {
+        double d = distTo[v] + G.weight(e);
+        if (d < distTo[w]) {
+            double b = bound(w);
+            if (b == Double.POSITIVE_INFINITY) return;     // t cannot be reached from w
+            distTo[w] = d;
+            edgeTo[w] = e;
+            if (pq.contains(w)) pq.decrease(w, d + b);
+            else                pq.insert(w, d + b);
+        }
+    }
+
+    // the ACTIVE landmarks with the largest bound on the s->t distance
+    private int[] activeLandmarks() {
+        int n = Math.min(ACTIVE, L.size());
+        int[] best = new int[n];
+        double[] value = new double[n];
+        int size = 0;
+        for (int i = 0; i < L.size(); i++) {
+            double b = L.lowerBound(i, s, t);
+            if (size < n) size++;
+            else if (b <= value[n-1]) continue;
+            // insertion sort into best[], largest first
+            int j = size - 1;
+            for (; j > 0 && value[j-1] < b; j--) {
+                best[j] = best[j-1];
+                value[j] = value[j-1];
+            }
+            best[j] = i;
+            value[j] = b;
+        }
+        return best;
+    }
+
+    // lower bound on the v->t distance from the active landmarks
+    private double bound(int v) {
+        if (Double.isNaN(bound[v])) {
+            double b = 0.0;
+            for (int i : active)
+                b = Math.max(b, L.lowerBound(i, v, t));
+            bound[v] = b;
+        }
+        return bound[v];
+    }
+
+    // only t is answered; anything else is a caller error
+    private void validate(int v) {
+        if (v != t) throw new RuntimeException("Only the path from " + s + " to " + t + " was computed");
+    }
+
+    // length of shortest path from s to t
+    public double distTo(int v) {
+        validate(v);
+        return distTo[t];
+    }
+
+    // is there a path from s to t?
+    public boolean hasPathTo(int v) {
+        validate(v);
+        return distTo[t] < Double.POSITIVE_INFINITY;
+    }
+
+    // shortest path from s to t as an Iterable, null if no such path
+    public Iterable<DirectedEdge> pathTo(int v) {
+        validate(v);
+        if (!hasPathTo(v)) return null;
+        Stack<DirectedEdge> path = new Stack<DirectedEdge>();
+        for (int e = edgeTo[t]; e != -1; e = edgeTo[G.from(e)]) {
+            path.push(G.edge(e));
+        }
+        return path;
+    }
+
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+        Landmarks L = new Landmarks(G, 4);
+
+        // compare with DijkstraSP for every pair
+        for (int s = 0; s < G.V(); s++) {
+            DijkstraSP check = new DijkstraSP(G, s);
+            for (int t = 0; t < G.V(); t++) {
+                AStarSP sp = new AStarSP(G, L, s, t);
+                if (Math.abs(sp.distTo(t) - check.distTo(t)) > 1e-9 * Math.max(1.0, check.distTo(t))
+                    && sp.distTo(t) != check.distTo(t))
+                    throw new RuntimeException("distance " + s + " to " + t + " differs: " + sp.distTo(t) + " vs " + check.distTo(t));
+            }
+        }
+
+        int s = 0, t = G.V() - 1;
+        AStarSP sp = new AStarSP(G, L, s, t);
+        if (sp.hasPathTo(t)) {
+            StdOut.printf("%d to %d (%.2f)  ", s, t, sp.distTo(t));
+            for (DirectedEdge e : sp.pathTo(t)) {
+                StdOut.print(e + "   ");
+            }
+            StdOut.println();
+        }
+        else {
+            StdOut.printf("%d to %d         no path\n", s, t);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*************************************************************************
+ *  Compilation:  javac AllPairsSP.java
+ *  Execution:    java AllPairsSP graph1.txt [matrix.bin]
+ *  Dependencies: Graph.java Stack.java DirectedEdge.java ShortestPaths.java
+ *
+ *  All pairs shortest paths by Floyd-Warshall, for networks of up to a
+ *  few thousand vertices. Afterwards a distance is one lookup and a
+ *  path takes one lookup per edge: next[v][t] is the slot of the first
+ *  edge on a shortest v->t path.
+ *
+ *  The matrix is processed in B x B tiles. For each block of B
+ *  intermediate vertices k, the diagonal tile is done first, then the
+ *  tiles in its row and column, then all the others; the tiles of the
+ *  last two steps are independent and are spread over a pool of
+ *  threads. Each tile stays in cache while B values of k pass over it.
+ *
+ *  Both tables are row-major V x V buffers, on the heap or mapped from
+ *  a file written by write(); see load(). Like the other engines, down
+ *  nodes are left out and isStale() tells when G has changed since.
+ *
+ *  Layout of a matrix file, little-endian:
+ *    header    magic, version, V, E           4 ints
+ *    dist      dist[v*V + t]                  V*V doubles
+ *    next      next[v*V + t], -1 if none      V*V ints
+ *
+ *************************************************************************/
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class AllPairsSP {
+    private static final int B = 64;                 // tile size
+    private static final int MAGIC = 0x50535041;     // "APSP"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+
+    private final Graph G;                           // slots in next refer to G
+    private final int V;
+    private final long version;                      // G.version() the tables belong to
+    private DoubleBuffer dist;                       // dist[v*V + t] = length of shortest v->t path
+    private IntBuffer next;                          // next[v*V + t] = slot of first edge on it, -1 if none
+
+    // one thread per processor
+    public AllPairsSP(Graph G) {
+        this(G, Runtime.getRuntime().availableProcessors());
+    }
+
+    public AllPairsSP(Graph G, int threads) {
+        if (threads < 1) throw new RuntimeException("Need at least one thread");
+        if ((long) G.V() * G.V() > Integer.MAX_VALUE / 8) throw new RuntimeException("Too many vertices for an all pairs matrix: " + G.V());
+        this.G = G;
+        this.V = G.V();
+        this.version = G.version();
+
+        double[] d = new double[V * V];
+        int[] n = new int[V * V];
+        for (int i = 0; i < V * V; i++) {
+            d[i] = Double.POSITIVE_INFINITY;
+            n[i] = -1;
+        }
+        for (int v = 0; v < V; v++) {
+            d[v*V + v] = 0.0;                        // even when down, as in DijkstraSP
+            if (!G.checkConnection(v)) continue;
+            for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+                int w = G.to(e);
+                if (G.checkConnection(w) && G.weight(e) < d[v*V + w]) {
+                    d[v*V + w] = G.weight(e);
+                    n[v*V + w] = e;
+                }
+            }
+        }
+
+        ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            floydWarshall(d, n, pool);
+        }
+        finally {
+            if (pool != null) pool.shutdown();
+        }
+        dist = DoubleBuffer.wrap(d);
+        next = IntBuffer.wrap(n);
+    }
+
+    // tables read from a matrix file
+    private AllPairsSP(Graph G, DoubleBuffer dist, IntBuffer next) {
+        this.G = G;
+        this.V = G.V();
+        this.version = G.version();
+        this.dist = dist;
+        this.next = next;
+    }
+
+
+   /**************************************************************
+    * Blocked Floyd-Warshall
+    **************************************************************/
+    private void floydWarshall(final double[] d, final int[] n, ExecutorService pool) {
+        final int tiles = (V + B - 1) / B;
+        for (int kb = 0; kb < tiles; kb++) {
+            final int k = kb;
+            tile(d, n, k, k, k);
+
+            // the rest of row k and column k of tiles
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (int t = 0; t < tiles; t++) {
+                if (t == k) continue;
+                final int other = t;
+                tasks.add(new Callable<Void>() {
+                    public Void call() {
+                        tile(d, n, k, other, k);
+                        tile(d, n, other, k, k);
+                        return null;
+                    }
+                });
+            }
+            runAll(pool, tasks);
+
+            // every other tile, one row of tiles per task
+            tasks.clear();
+            for (int t = 0; t < tiles; t++) {
+                if (t == k) continue;
+                final int row = t;
+                tasks.add(new Callable<Void>() {
+                    public Void call() {
+                        for (int col = 0; col < tiles; col++)
+                            if (col != k) tile(d, n, row, col, k);
+                        return null;
+                    }
+                });
+            }
+            runAll(pool, tasks);
+        }
+    }
+
+    // relax tile (ib, jb) through the intermediate vertices of block kb
+    private void tile(double[] d, int[] n, int ib, int jb, int kb) {
+        int iEnd = Math.min(V, (ib + 1) * B);
+        int jEnd = Math.min(V, (jb + 1) * B);
+        int kEnd = Math.min(V, (kb + 1) * B);
+        for (int k = kb * B; k < kEnd; k++) {
+            int kRow = k * V;
+            for (int i = ib * B; i < iEnd; i++) {
+                int iRow = i * V;
+                double dik = d[iRow + k];
+                if (dik == Double.POSITIVE_INFINITY) continue;
+                int nik = n[iRow + k];
+                for (int j = jb * B; j < jEnd; j++) {
+                    double through = dik + d[kRow + j];
+                    if (through < d[iRow + j]) {
+                        d[iRow + j] = through;
+                        n[iRow + j] = nik;
+                    }
+                }
+            }
+        }
+    }
+
+    // run tasks on pool, or on this thread without one
+    private static void runAll(ExecutorService pool, List<Callable<Void>> tasks) {
+        try {
+            if (pool == null) {
+                for (Callable<Void> task : tasks) task.call();
+                return;
+            }
+            for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted during all pairs shortest paths", ie);
+        }
+        catch (ExecutionException ee) {
+            if (ee.getCause() instanceof RuntimeException) throw (RuntimeException) ee.getCause();
+            throw new RuntimeException(ee.getCause());
+        }
+        catch (RuntimeException re) {
+            throw re;
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+   /**************************************************************
+    * Queries
+    **************************************************************/
+
+    // has G changed since the tables were computed?
+    public boolean isStale() {
+        return G.version() != version;
+    }
+
+    // length of shortest path from v to t
+    public double distance(int v, int t) {
+        return dist.get(v*V + t);
+    }
+
+    // is there a path from v to t?
+    public boolean hasPath(int v, int t) {
+        return dist.get(v*V + t) < Double.POSITIVE_INFINITY;
+    }
+
+    // shortest path from v to t as an Iterable, null if no such path
+    public Iterable<DirectedEdge> path(int v, int t) {
+        if (!hasPath(v, t)) return null;
+        Stack<DirectedEdge> reversed = new Stack<DirectedEdge>();
+        for (int x = v; x != t; ) {
+            int e = next.get(x*V + t);
+            reversed.push(G.edge(e));
+            x = G.to(e);
+        }
+        Stack<DirectedEdge> path = new Stack<DirectedEdge>();
+        for (DirectedEdge e : reversed)
+            path.push(e);
+        return path;
+    }
+
+    // the shortest paths from s, answered from the tables
+    public ShortestPaths from(final int s) {
+        return new ShortestPaths() {
+            public double distTo(int v)                  { return distance(s, v); }
+            public boolean hasPathTo(int v)              { return hasPath(s, v); }
+            public Iterable<DirectedEdge> pathTo(int v)  { return path(s, v); }
+        };
+    }
+
+
+   /**************************************************************
+    * Matrix files
+    **************************************************************/
+
+   /**
+     * Write both tables to filename in the layout above.
+     */
+    public void write(String filename) {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putInt(VERSION).putInt(V).putInt(G.E());
+            for (int i = 0; i < V * V; i++) {
+                if (buf.remaining() < 8) buf = drain(channel, buf);
+                buf.putDouble(dist.get(i));
+            }
+            for (int i = 0; i < V * V; i++) {
+                if (buf.remaining() < 4) buf = drain(channel, buf);
+                buf.putInt(next.get(i));
+            }
+            drain(channel, buf);
+        }
+        catch (IOException ioe) {
+            throw new RuntimeException("Could not write " + filename, ioe);
+        }
+    }
+
+    private static ByteBuffer drain(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) channel.write(buf);
+        buf.clear();
+        return buf;
+    }
+
+   /**
+     * Map a matrix file written by write() for G. The file can only be
+     * checked against the size of G, so it must come from the same graph
+     * in the same state; the tables are then read from the page cache
+     * instead of being recomputed.
+     */
+    public static AllPairsSP load(Graph G, String filename) {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+            FileChannel channel = file.getChannel();
+            long V = G.V();
+            if (channel.size() != HEADER + 12 * V * V) throw new RuntimeException(filename + " is not a matrix for this graph");
+            ByteBuffer header = map(channel, 0, HEADER);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                || header.getInt(8) != G.V() || header.getInt(12) != G.E())
+                throw new RuntimeException(filename + " is not a matrix for this graph");
+            DoubleBuffer dist = map(channel, HEADER, 8 * V * V).asDoubleBuffer();
+            IntBuffer next = map(channel, HEADER + 8 * V * V, 4 * V * V).asIntBuffer();
+            return new AllPairsSP(G, dist, next);
+        }
+        catch (IOException ioe) {
+            throw new RuntimeException("Could not read " + filename, ioe);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+        long start = System.nanoTime();
+        AllPairsSP apsp = new AllPairsSP(G);
+        StdOut.printf("All pairs for %d vertices in %.1f ms\n", G.V(), (System.nanoTime() - start) / 1e6);
+        if (args.length > 1) {
+            apsp.write(args[1]);
+            apsp = load(G, args[1]);
+        }
+
+        // compare with DijkstraSP, paths included
+        for (int s = 0; s < G.V(); s++) {
+            DijkstraSP sp = new DijkstraSP(G, s);
+            for (int t = 0; t < G.V(); t++) {
+                if (apsp.hasPath(s, t) != sp.hasPathTo(t))
+                    throw new RuntimeException("reachability " + s + " to " + t + " differs");
+                if (!sp.hasPathTo(t)) continue;
+                double length = 0.0;
+                for (DirectedEdge e : apsp.path(s, t))
+                    length += e.weight();
+                if (Math.abs(apsp.distance(s, t) - sp.distTo(t)) > 1e-9 * Math.max(1.0, sp.distTo(t))
+                    || Math.abs(length - sp.distTo(t)) > 1e-9 * Math.max(1.0, sp.distTo(t)))
+                    throw new RuntimeException("distance " + s + " to " + t + " differs: " + apsp.distance(s, t) + " vs " + sp.distTo(t));
+            }
+        }
+
+        if (G.V() > 10) return;
+        for (int s = 0; s < G.V(); s++) {
+            for (int t = 0; t < G.V(); t++) {
+                if (apsp.hasPath(s, t)) StdOut.printf("%8.2f", apsp.distance(s, t));
+                else                    StdOut.printf("%8s", "-");
+            }
+            StdOut.println();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*************************************************************************
+ *  Compilation:  javac BatchSP.java
+ *  Execution:    java BatchSP graph1.txt [threads]
+ *  Dependencies: Graph.java DoubleIndexMinPQ.java
+ *
+ *  Distances from many sources at once. Each source is an independent
+ *  run of Dijkstra's algorithm, the same search DijkstraSP does, and
+ *  the runs are spread over a ForkJoinPool. The graph is only read, so
+ *  all threads share it; each thread keeps one heap for all its runs,
+ *  and each run writes straight into its row of the distance matrix,
+ *  one flat array allocated up front, so nothing is allocated per
+ *  source at all.
+ *
+ *  The graph must not change while a batch runs.
+ *
+ *************************************************************************/
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class BatchSP {
+    private final int[] sources;
+    private final double[] distTo;       // distTo[i*V + v] = length of shortest path from sources[i] to v
+    private final Graph G;
+    private final int V;
+
+    // one thread per processor
+    public BatchSP(Graph G, int[] sources) {
+        this(G, sources, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchSP(Graph G, int[] sources, int threads) {
+        if (threads < 1) throw new RuntimeException("Need at least one thread");
+        this.G = G;
+        this.sources = sources.clone();
+        V = G.V();
+        if ((long) sources.length * V > Integer.MAX_VALUE) throw new RuntimeException("Too many sources for one matrix: " + sources.length);
+        distTo = new double[sources.length * V];
+        for (int s : sources)
+            if (s < 0 || s >= G.V()) throw new RuntimeException("Source " + s + " out of range");
+
+        // merge pending edges now, so the threads only ever read G
+        G.compact();
+
+        final int d = DoubleIndexMinPQ.arity(G.V(), G.E());
+        if (threads == 1 || sources.length <= 1) {
+            DoubleIndexMinPQ pq = new DoubleIndexMinPQ(G.V(), d);
+            for (int i = 0; i < sources.length; i++)
+                run(i, pq);
+            return;
+        }
+
+        final ThreadLocal<DoubleIndexMinPQ> heaps = new ThreadLocal<DoubleIndexMinPQ>() {
+            protected DoubleIndexMinPQ initialValue() {
+                return new DoubleIndexMinPQ(BatchSP.this.G.V(), d);
+            }
+        };
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new Split(0, sources.length, heaps));
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    // runs sources[lo] to sources[hi-1], halving the range so idle threads can steal
+    private class Split extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int lo, hi;
+        private final ThreadLocal<DoubleIndexMinPQ> heaps;
+
+        Split(int lo, int hi, ThreadLocal<DoubleIndexMinPQ> heaps) {
+            this.lo = lo;
+            this.hi = hi;
+            this.heaps = heaps;
+        }
+
+        protected void compute() {
+            if (hi - lo == 1) {
+                run(lo, heaps.get());
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Split(lo, mid, heaps), new Split(mid, hi, heaps));
+        }
+    }
+
+    // Dijkstra from sources[i] into row i, using pq and leaving it empty
+    private void run(int i, DoubleIndexMinPQ pq) {
+        int s = sources[i];
+        int row = i * V;
+        Arrays.fill(distTo, row, row + V, Double.POSITIVE_INFINITY);
+        distTo[row + s] = 0.0;
+
+        pq.insert(s, 0.0);
+        while (!pq.isEmpty()) {
+            int v = pq.delMin();
+            if (!G.checkConnection(v)) continue;     // down nodes carry no paths
+            for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+                int w = G.to(e);
+                if (!G.checkConnection(w)) continue;
+                double dw = distTo[row + v] + G.weight(e);
+                if (dw < distTo[row + w]) {
+                    distTo[row + w] = dw;
+                    if (pq.contains(w)) pq.decrease(w, dw);
+                    else                pq.insert(w, dw);
+                }
+            }
+        }
+    }
+
+    // number of sources
+    public int size() {
+        return sources.length;
+    }
+
+    // the i-th source
+    public int source(int i) {
+        return sources[i];
+    }
+
+    // length of shortest path from the i-th source to v
+    public double distTo(int i, int v) {
+        return distTo[i*V + v];
+    }
+
+    // is there a path from the i-th source to v?
+    public boolean hasPathTo(int i, int v) {
+        return distTo[i*V + v] < Double.POSITIVE_INFINITY;
+    }
+
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        // every vertex is a source
+        int[] sources = new int[G.V()];
+        for (int v = 0; v < G.V(); v++)
+            sources[v] = v;
+        long start = System.nanoTime();
+        BatchSP batch = new BatchSP(G, sources, threads);
+        StdOut.printf("%d sources on %d threads in %.1f ms\n", batch.size(), threads, (System.nanoTime() - start) / 1e6);
+
+        // compare with DijkstraSP
+        for (int i = 0; i < batch.size(); i++) {
+            DijkstraSP sp = new DijkstraSP(G, batch.source(i));
+            for (int v = 0; v < G.V(); v++) {
+                if (batch.distTo(i, v) != sp.distTo(v))
+                    throw new RuntimeException("distance " + batch.source(i) + " to " + v + " differs: " + batch.distTo(i, v) + " vs " + sp.distTo(v));
+            }
+        }
+
+        if (G.V() > 10) return;
+        for (int i = 0; i < batch.size(); i++) {
+            for (int v = 0; v < G.V(); v++) {
+                if (batch.hasPathTo(i, v)) StdOut.printf("%8.2f", batch.distTo(i, v));
+                else                       StdOut.printf("%8s", "-");
+            }
+            StdOut.println();
+        }
+    }
+}
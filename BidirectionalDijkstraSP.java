@@ -0,0 +1,169 @@
+/*************************************************************************
+ *  Compilation:  javac BidirectionalDijkstraSP.java
+ *  Execution:    java BidirectionalDijkstraSP graph1.txt
+ *  Dependencies: Graph.java DoubleIndexMinPQ.java Stack.java DirectedEdge.java
+ *                ShortestPaths.java
+ *
+ *  Bidirectional Dijkstra for a single s->t query. One search grows
+ *  forward from s over the edges leaving each vertex, the other grows
+ *  backward from t over the edges entering each vertex, always
+ *  advancing the one whose next vertex is closer. mu is the shortest
+ *  s->t path seen where the two searches touch; once the two queue
+ *  minimums add up to at least mu, no shorter path can exist. Each
+ *  search only reaches about half the distance, which on road-like
+ *  networks is roughly the square root of the vertices one search
+ *  from s would settle.
+ *
+ *  Down nodes are skipped the same way DijkstraSP skips them.
+ *
+ *************************************************************************/
+
+public class BidirectionalDijkstraSP implements ShortestPaths {
+    private double[] distF;          // distF[v] = length of shortest s->v path found so far
+    private double[] distB;          // distB[v] = length of shortest v->t path found so far
+    private int[] edgeF;             // edgeF[v] = slot of last edge on that s->v path, -1 if none
+    private int[] edgeB;             // edgeB[v] = slot of first edge on that v->t path, -1 if none
+    private DoubleIndexMinPQ pqF;
+    private DoubleIndexMinPQ pqB;
+    private double mu = Double.POSITIVE_INFINITY;   // length of shortest s->t path found so far
+    private int meet = -1;           // vertex on that path where the searches meet
+    private final int s;
+    private final int t;
+    private Graph G;                 // slots in edgeF[] and edgeB[] refer to G
+
+    public BidirectionalDijkstraSP(Graph G, int s, int t) {
+        this.G = G;
+        this.s = s;
+        this.t = t;
+        distF = new double[G.V()];
+        distB = new double[G.V()];
+        edgeF = new int[G.V()];
+        edgeB = new int[G.V()];
+        for (int v = 0; v < G.V(); v++) {
+            distF[v] = Double.POSITIVE_INFINITY;
+            distB[v] = Double.POSITIVE_INFINITY;
+            edgeF[v] = -1;
+            edgeB[v] = -1;
+        }
+        distF[s] = 0.0;
+        distB[t] = 0.0;
+        if (s == t) {
+            mu = 0.0;
+            meet = s;
+            return;
+        }
+        if (!G.checkConnection(s) || !G.checkConnection(t)) return;
+
+        int d = DoubleIndexMinPQ.arity(G.V(), G.E());
+        pqF = new DoubleIndexMinPQ(G.V(), d);
+        pqB = new DoubleIndexMinPQ(G.V(), d);
+        pqF.insert(s, 0.0);
+        pqB.insert(t, 0.0);
+        while (!pqF.isEmpty() && !pqB.isEmpty()) {
+            if (pqF.minKey() + pqB.minKey() >= mu) break;
+            if (pqF.minKey() <= pqB.minKey()) scanForward(pqF.delMin());
+            else                              scanBackward(pqB.delMin());
+        }
+    }
+
+    // relax the edges leaving v
+    private void scanForward(int v) {
+        for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+            int w = G.to(e);
+            if (!G.checkConnection(w)) continue;
+            double d = distF[v] + G.weight(e);
+            if (d < distF[w]) {
+                distF[w] = d;
+                edgeF[w] = e;
+                if (pqF.contains(w)) pqF.decrease(w, d);
+                else                 pqF.insert(w, d);
+                if (d + distB[w] < mu) {
+                    mu = d + distB[w];
+                    meet = w;
+                }
+            }
+        }
+    }
+
+    // relax the edges entering v
+    private void scanBackward(int v) {
+        for (int i = G.inBegin(v), end = G.inEnd(v); i < end; i++) {
+            int e = G.inSlot(i);
+            int u = G.inFrom(i);
+            if (!G.checkConnection(u)) continue;
+            double d = distB[v] + G.weight(e);
+            if (d < distB[u]) {
+                distB[u] = d;
+                edgeB[u] = e;
+                if (pqB.contains(u)) pqB.decrease(u, d);
+                else                 pqB.insert(u, d);
+                if (distF[u] + d < mu) {
+                    mu = distF[u] + d;
+                    meet = u;
+                }
+            }
+        }
+    }
+
+    // only t is answered; anything else is a caller error
+    private void validate(int v) {
+        if (v != t) throw new RuntimeException("Only the path from " + s + " to " + t + " was computed");
+    }
+
+    // length of shortest path from s to t
+    public double distTo(int v) {
+        validate(v);
+        return mu;
+    }
+
+    // is there a path from s to t?
+    public boolean hasPathTo(int v) {
+        validate(v);
+        return mu < Double.POSITIVE_INFINITY;
+    }
+
+    // shortest path from s to t as an Iterable, null if no such path
+    public Iterable<DirectedEdge> pathTo(int v) {
+        validate(v);
+        if (!hasPathTo(v)) return null;
+
+        // meet->t first, pushed from its end, then s->meet on top of it
+        Stack<DirectedEdge> back = new Stack<DirectedEdge>();
+        for (int x = meet; edgeB[x] != -1; x = G.to(edgeB[x]))
+            back.push(G.edge(edgeB[x]));
+        Stack<DirectedEdge> path = new Stack<DirectedEdge>();
+        for (DirectedEdge e : back)
+            path.push(e);
+        for (int e = edgeF[meet]; e != -1; e = edgeF[G.from(e)])
+            path.push(G.edge(e));
+        return path;
+    }
+
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+
+        // compare with DijkstraSP for every pair
+        for (int s = 0; s < G.V(); s++) {
+            DijkstraSP check = new DijkstraSP(G, s);
+            for (int t = 0; t < G.V(); t++) {
+                BidirectionalDijkstraSP sp = new BidirectionalDijkstraSP(G, s, t);
+                if (sp.distTo(t) != check.distTo(t))
+                    throw new RuntimeException("distance " + s + " to " + t + " differs: " + sp.distTo(t) + " vs " + check.distTo(t));
+            }
+        }
+
+        int s = 0, t = G.V() - 1;
+        BidirectionalDijkstraSP sp = new BidirectionalDijkstraSP(G, s, t);
+        if (sp.hasPathTo(t)) {
+            StdOut.printf("%d to %d (%.2f)  ", s, t, sp.distTo(t));
+            for (DirectedEdge e : sp.pathTo(t)) {
+                StdOut.print(e + "   ");
+            }
+            StdOut.println();
+        }
+        else {
+            StdOut.printf("%d to %d         no path\n", s, t);
+        }
+    }
+}
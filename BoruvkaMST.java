@@ -0,0 +1,219 @@
+/*************************************************************************
+ *  Compilation:  javac BoruvkaMST.java
+ *  Execution:    java BoruvkaMST graph1.txt [threads]
+ *  Dependencies: Graph.java ConcurrentUF.java Bag.java DirectedEdge.java
+ *                SpanningForest.java Subgraph.java PrimMST.java
+ *
+ *  Boruvka's algorithm to compute a minimum spanning forest, run on a
+ *  ForkJoinPool. Each round has two passes over the vertices, split
+ *  into ranges that idle threads can steal:
+ *
+ *    - every vertex offers its cheapest edge out of its component to
+ *      the component, which keeps the cheapest offer it gets
+ *    - every component joins the one its cheapest edge leads to
+ *
+ *  The components live in a ConcurrentUF, and offers race through
+ *  compareAndSet on the component's slot in cheapest[]. Every round
+ *  at least halves the number of components that still have an edge
+ *  out, so there are at most lg V rounds.
+ *
+ *  Edges are ordered by weight, then by their lower and higher end, so
+ *  that two components never pick different edges of equal weight that
+ *  close a cycle. Every edge counts as undirected. Like PrimMST, only
+ *  the edges of a Subgraph count; given a Graph, those between nodes
+ *  that are up. The graph must not change while the forest is computed.
+ *
+ *************************************************************************/
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class BoruvkaMST implements SpanningForest {
+    private static final int GRAIN = 1024;      // vertices a task handles without splitting
+
+    private final Bag<DirectedEdge> mst = new Bag<DirectedEdge>();   // edges in the MST
+    private double weight;                                          // weight of the MST
+
+    private final Graph G;
+    private final Subgraph H;                   // the part of G the forest spans
+    private final int[] tails;                  // tails[e] = vertex slot e leaves from
+    private final ConcurrentUF uf;
+    private final AtomicIntegerArray cheapest;  // cheapest.get(r) = slot of cheapest edge out of component r, -1 if none
+    private final int[] joined;                 // joined[r] = slot that joined component r to another this round, -1 if none
+    private final boolean[] inside;             // inside[v] = all edges of v stay in its component; they always will
+
+    // one thread per processor
+    public BoruvkaMST(Graph G) {
+        this(G, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BoruvkaMST(Graph G, int threads) {
+        this(new Subgraph(G), threads);
+    }
+
+    public BoruvkaMST(Subgraph H, int threads) {
+        if (threads < 1) throw new RuntimeException("Need at least one thread");
+        if (H.isStale()) throw new RuntimeException("Subgraph view is stale, G has new edges or vertices");
+        Graph G = H.graph();
+        this.G = G;
+        this.H = H;
+        G.compact();                            // the threads only ever read G
+        int V = G.V();
+        tails = new int[G.E()];
+        for (int v = 0; v < V; v++)
+            for (int e = G.begin(v), end = G.end(v); e < end; e++)
+                tails[e] = v;
+        uf = new ConcurrentUF(V);
+        cheapest = new AtomicIntegerArray(V);
+        joined = new int[V];
+        inside = new boolean[V];
+        for (int v = 0; v < V; v++) {
+            cheapest.set(v, -1);
+            joined[v] = -1;
+            inside[v] = !H.hasVertex(v);        // no edges at all
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            while (true) {
+                pool.invoke(new Round(0, V, false));
+                pool.invoke(new Round(0, V, true));
+
+                // collect the edges, leaving cheapest[] and joined[] clear for the next round
+                int found = 0;
+                for (int r = 0; r < V; r++) {
+                    if (cheapest.get(r) == -1) continue;
+                    cheapest.set(r, -1);
+                    found++;
+                    int e = joined[r];
+                    if (e == -1) continue;
+                    joined[r] = -1;
+                    mst.add(new DirectedEdge(tails[e], G.to(e), G.weight(e)));
+                    weight += G.weight(e);
+                }
+                if (found == 0) break;
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        // check optimality conditions
+        assert check(H);
+    }
+
+    // one pass over vertices lo to hi-1, halving the range so idle threads can steal
+    private class Round extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int lo, hi;
+        private final boolean join;             // the joining pass, not the offering one
+
+        Round(int lo, int hi, boolean join) {
+            this.lo = lo;
+            this.hi = hi;
+            this.join = join;
+        }
+
+        protected void compute() {
+            if (hi - lo > GRAIN) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Round(lo, mid, join), new Round(mid, hi, join));
+                return;
+            }
+            if (join) {
+                // cheapest[] is only filled in for components that were roots when
+                // the round began; each tries to join the one across its edge
+                for (int r = lo; r < hi; r++) {
+                    int e = cheapest.get(r);
+                    if (e != -1 && uf.union(tails[e], G.to(e))) joined[r] = e;
+                }
+                return;
+            }
+            for (int v = lo; v < hi; v++) {
+                if (inside[v]) continue;
+                int best = -1;
+                int r = uf.find(v);
+                for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+                    if (best != -1 && !less(e, best)) continue;
+                    int w = G.to(e);
+                    if (!H.hasVertex(w) || !H.hasEdge(e)) continue;
+                    if (uf.find(w) != r) best = e;
+                }
+                if (best != -1) offer(r, best);
+                else            inside[v] = true;
+            }
+        }
+    }
+
+    // make e the cheapest edge out of component r if it beats the current one
+    private void offer(int r, int e) {
+        while (true) {
+            int current = cheapest.get(r);
+            if (current != -1 && !less(e, current)) return;
+            if (cheapest.compareAndSet(r, current, e)) return;
+        }
+    }
+
+    // is edge e before edge f? by weight, then lower end, then higher end
+    private boolean less(int e, int f) {
+        double we = G.weight(e), wf = G.weight(f);
+        if (we != wf) return we < wf;
+        int ve = tails[e], xe = G.to(e), vf = tails[f], xf = G.to(f);
+        int lowE = Math.min(ve, xe), lowF = Math.min(vf, xf);
+        if (lowE != lowF) return lowE < lowF;
+        return Math.max(ve, xe) < Math.max(vf, xf);
+    }
+
+    // return iterator of edges in MST
+    public Iterable<DirectedEdge> edges() {
+        return mst;
+    }
+
+    // return weight of MST
+    public double weight() {
+        return weight;
+    }
+
+
+    // check that the MST is a spanning forest; main compares its weight with PrimMST
+    private boolean check(Subgraph H) {
+        UF check = new UF(G.V());
+        for (DirectedEdge e : edges()) {
+            if (check.connected(e.from(), e.to())) {
+                System.err.println("Not a forest");
+                return false;
+            }
+            check.union(e.from(), e.to());
+        }
+        for (int e = 0; e < G.E(); e++) {
+            if (!H.hasVertex(tails[e]) || !H.hasVertex(G.to(e)) || !H.hasEdge(e)) continue;
+            if (!check.connected(tails[e], G.to(e))) {
+                System.err.println("Not a spanning forest");
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        BoruvkaMST boruvka = new BoruvkaMST(G, threads);
+        double boruvkaTime = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        PrimMST prim = new PrimMST(G);
+        double primTime = (System.nanoTime() - start) / 1e6;
+
+        StdOut.printf("Boruvka: total weight = %.5f in %.1f ms on %d threads\n", boruvka.weight(), boruvkaTime, threads);
+        StdOut.printf("Prim:    total weight = %.5f in %.1f ms\n", prim.weight(), primTime);
+        if (Math.abs(prim.weight() - boruvka.weight()) > 1E-9 * Math.max(1.0, prim.weight()))
+            throw new RuntimeException("Weights differ: " + boruvka.weight() + " vs " + prim.weight());
+        if (G.V() > 10) return;
+        for (DirectedEdge e : boruvka.edges())
+            StdOut.println(e);
+    }
+}
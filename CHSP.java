@@ -0,0 +1,99 @@
+/*************************************************************************
+ *  Compilation:  javac CHSP.java
+ *  Execution:    java CHSP graph1.txt
+ *  Dependencies: Graph.java ContractionHierarchy.java BidirectionalDijkstraSP.java
+ *                Stack.java DirectedEdge.java ShortestPaths.java
+ *
+ *  A single s->t query on a ContractionHierarchy. The path comes back
+ *  unpacked into edges of G, the same as DijkstraSP.pathTo() gives,
+ *  and its length is summed along those edges.
+ *
+ *  A stale hierarchy is not trusted: the query then runs as
+ *  BidirectionalDijkstraSP, still exact but without the speedup.
+ *
+ *************************************************************************/
+
+public class CHSP implements ShortestPaths {
+    private int[] path;              // slots on the shortest s->t path, null if none
+    private double dist = Double.POSITIVE_INFINITY;
+    private ShortestPaths fallback;  // answers instead when the hierarchy is stale
+    private final int s;
+    private final int t;
+    private Graph G;                 // slots in path[] refer to G
+
+    public CHSP(Graph G, ContractionHierarchy ch, int s, int t) {
+        this.G = G;
+        this.s = s;
+        this.t = t;
+        if (ch.isStale()) {
+            fallback = new BidirectionalDijkstraSP(G, s, t);
+            return;
+        }
+        path = ch.path(s, t);
+        if (path == null) return;
+        dist = 0.0;
+        for (int e : path)
+            dist += G.weight(e);
+    }
+
+    // only t is answered; anything else is a caller error
+    private void validate(int v) {
+        if (v != t) throw new RuntimeException("Only the path from " + s + " to " + t + " was computed");
+    }
+
+    // length of shortest path from s to t
+    public double distTo(int v) {
+        validate(v);
+        if (fallback != null) return fallback.distTo(v);
+        return dist;
+    }
+
+    // is there a path from s to t?
+    public boolean hasPathTo(int v) {
+        validate(v);
+        if (fallback != null) return fallback.hasPathTo(v);
+        return path != null;
+    }
+
+    // shortest path from s to t as an Iterable, null if no such path
+    public Iterable<DirectedEdge> pathTo(int v) {
+        validate(v);
+        if (fallback != null) return fallback.pathTo(v);
+        if (!hasPathTo(v)) return null;
+        Stack<DirectedEdge> edges = new Stack<DirectedEdge>();
+        for (int i = path.length - 1; i >= 0; i--) {
+            edges.push(G.edge(path[i]));
+        }
+        return edges;
+    }
+
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+        ContractionHierarchy ch = new ContractionHierarchy(G);
+
+        // compare with DijkstraSP for every pair
+        for (int s = 0; s < G.V(); s++) {
+            DijkstraSP check = new DijkstraSP(G, s);
+            for (int t = 0; t < G.V(); t++) {
+                CHSP sp = new CHSP(G, ch, s, t);
+                if (Math.abs(sp.distTo(t) - check.distTo(t)) > 1e-9 * Math.max(1.0, check.distTo(t))
+                    && sp.distTo(t) != check.distTo(t))
+                    throw new RuntimeException("distance " + s + " to " + t + " differs: " + sp.distTo(t) + " vs " + check.distTo(t));
+            }
+        }
+
+        int s = 0, t = G.V() - 1;
+        CHSP sp = new CHSP(G, ch, s, t);
+        if (sp.hasPathTo(t)) {
+            StdOut.printf("%d to %d (%.2f)  ", s, t, sp.distTo(t));
+            for (DirectedEdge e : sp.pathTo(t)) {
+                StdOut.print(e + "   ");
+            }
+            StdOut.println();
+        }
+        else {
+            StdOut.printf("%d to %d         no path\n", s, t);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/****************************************************************************
+ *  Compilation:  javac ConcurrentUF.java
+ *  Execution:    java ConcurrentUF N [threads]
+ *  Dependencies: StdOut.java
+ *
+ *  Union-find that many threads can use at once without locks.
+ *
+ ****************************************************************************/
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ *  The <tt>ConcurrentUF</tt> class is a union-find data structure like
+ *  <tt>UF</tt> that threads may call at the same time.
+ *  <p>
+ *  Every parent pointer is only ever changed by compareAndSet. A root
+ *  is linked below the other root with the higher index, so no cycle
+ *  can form however the calls interleave, and find() halves the path
+ *  it walks. union() tells its caller whether it joined two sets, so
+ *  of many threads trying to join the same two sets exactly one does.
+ */
+
+public class ConcurrentUF {
+    private final AtomicIntegerArray id;    // id.get(i) = parent of i
+
+   /**
+     * Create a union find data structure with N isolated sets.
+     */
+    public ConcurrentUF(int N) {
+        id = new AtomicIntegerArray(N);
+        for (int i = 0; i < N; i++)
+            id.set(i, i);
+    }
+
+   /**
+     * Return the id of component corresponding to object p. By the time
+     * it returns, another thread may have linked that root below another.
+     */
+    public int find(int p) {
+        while (true) {
+            int q = id.get(p);
+            if (q == p) return p;
+            int r = id.get(q);
+            if (q != r) id.compareAndSet(p, q, r);    // path halving
+            p = r;
+        }
+    }
+
+   /**
+     * Are objects p and q in the same set?
+     */
+    public boolean connected(int p, int q) {
+        while (true) {
+            p = find(p);
+            q = find(q);
+            if (p == q) return true;
+            if (id.get(p) == p) return false;    // p was still a root, so the sets were apart
+        }
+    }
+
+   /**
+     * Join the sets containing p and q. Returns false if they were
+     * already the same set.
+     */
+    public boolean union(int p, int q) {
+        while (true) {
+            p = find(p);
+            q = find(q);
+            if (p == q) return false;
+            if (p > q) { int t = p; p = q; q = t; }
+            if (id.compareAndSet(p, p, q)) return true;    // fails if p stopped being a root
+        }
+    }
+
+
+    public static void main(String[] args) throws InterruptedException {
+        final int N = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final ConcurrentUF uf = new ConcurrentUF(N);
+
+        // every thread joins i to i+1 for all i, each from its own starting
+        // point; exactly N-1 unions succeed
+        final int stride = N / threads;
+        final int[] joined = new int[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int k = t;
+            workers[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i + 1 < N; i++) {
+                        int p = (i + k * stride) % (N - 1);
+                        if (uf.union(p, p + 1)) joined[k]++;
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        int total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total += joined[t];
+        }
+        StdOut.println(total + " unions succeeded on " + threads + " threads, expected " + (N - 1));
+        if (!uf.connected(0, N - 1)) throw new RuntimeException("0 and " + (N - 1) + " not connected");
+    }
+}
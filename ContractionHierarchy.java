@@ -0,0 +1,506 @@
+/*************************************************************************
+ *  Compilation:  javac ContractionHierarchy.java
+ *  Execution:    java ContractionHierarchy graph1.txt
+ *  Dependencies: Graph.java DoubleIndexMinPQ.java
+ *
+ *  Contraction hierarchy over the nodes of a Graph that are up.
+ *
+ *  Vertices are contracted one at a time, least important first. To
+ *  contract v, every path u->v->w through it is checked with a short
+ *  witness search from u that avoids v; when no path at least as short
+ *  is found, a shortcut u->w with the length of u->v->w is added. The
+ *  order is the contraction order, and the importance of a vertex is
+ *  its edge difference (shortcuts it would add minus edges it removes)
+ *  plus the number of its neighbors already contracted, which spreads
+ *  contractions evenly over the graph. Importance is recomputed lazily
+ *  when a vertex comes off the queue.
+ *
+ *  Afterwards every shortest path climbs to higher ranks and then
+ *  descends, so an s->t query only has to search upward from s over
+ *  the edges to higher ranks and upward from t over the edges from
+ *  higher ranks. See CHSP.
+ *
+ *  A queue vertex is stalled (not expanded) when a higher vertex the
+ *  search already reached offers a shorter way into it.
+ *
+ *  Each edge of the hierarchy is either an edge of G, remembered by its
+ *  slot, or a shortcut made of two edges of the hierarchy, so a path
+ *  unpacks back into edges of G.
+ *
+ *  The hierarchy describes the graph as it was when it was built, down
+ *  nodes included; isStale() tells when it has to be rebuilt.
+ *
+ *************************************************************************/
+
+import java.util.Arrays;
+
+public class ContractionHierarchy {
+    private static final int SETTLE_LIMIT = 200;    // vertices a witness search may settle
+    private static final int ESTIMATE_LIMIT = 10;   // the same when only counting shortcuts
+
+    private final Graph G;
+    private final long version;      // G.version() the hierarchy belongs to
+    private final int[] rank;        // rank[v] = position of v in the contraction order
+
+    // edges of the hierarchy: edge i goes from edgeFrom[i] to edgeTo[i] with
+    // weight edgeWeight[i]; it is slot edgeSlot[i] of G, or when that is -1,
+    // the shortcut made of edges edgeFirst[i] and edgeSecond[i]
+    private int edges;
+    private int[] edgeFrom = new int[16];
+    private int[] edgeTo = new int[16];
+    private double[] edgeWeight = new double[16];
+    private int[] edgeSlot = new int[16];
+    private int[] edgeFirst = new int[16];
+    private int[] edgeSecond = new int[16];
+
+    // upward edges: the edges from v to higher ranks are upEdges[upOffsets[v]]
+    // to upEdges[upOffsets[v+1]-1]; downEdges likewise holds the edges
+    // entering v from higher ranks
+    private int[] upOffsets;
+    private int[] upEdges;
+    private int[] downOffsets;
+    private int[] downEdges;
+
+    // query workspace, reset after each query; see path()
+    private double[] distF;
+    private double[] distB;
+    private int[] parentF;
+    private int[] parentB;
+    private int[] touched;           // vertices either search reached
+    private int reached;
+    private DoubleIndexMinPQ pqF;
+    private DoubleIndexMinPQ pqB;
+
+    public ContractionHierarchy(Graph G) {
+        this.G = G;
+        this.version = G.version();
+        int V = G.V();
+        rank = new int[V];
+        new Builder().build();
+
+        distF = new double[V];
+        distB = new double[V];
+        parentF = new int[V];
+        parentB = new int[V];
+        touched = new int[V];
+        Arrays.fill(distF, Double.POSITIVE_INFINITY);
+        Arrays.fill(distB, Double.POSITIVE_INFINITY);
+        pqF = new DoubleIndexMinPQ(V, 4);
+        pqB = new DoubleIndexMinPQ(V, 4);
+    }
+
+    // add an edge to the hierarchy and return its number
+    private int newEdge(int v, int w, double weight, int slot, int first, int second) {
+        if (edges == edgeFrom.length) {
+            int capacity = 2 * edges;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeWeight = Arrays.copyOf(edgeWeight, capacity);
+            edgeSlot = Arrays.copyOf(edgeSlot, capacity);
+            edgeFirst = Arrays.copyOf(edgeFirst, capacity);
+            edgeSecond = Arrays.copyOf(edgeSecond, capacity);
+        }
+        edgeFrom[edges] = v;
+        edgeTo[edges] = w;
+        edgeWeight[edges] = weight;
+        edgeSlot[edges] = slot;
+        edgeFirst[edges] = first;
+        edgeSecond[edges] = second;
+        return edges++;
+    }
+
+
+   /**************************************************************
+    * Preprocessing. The remaining graph keeps, for each vertex not
+    * yet contracted, the edges leaving it and entering it; at most
+    * one edge per pair, the lightest.
+    **************************************************************/
+    private class Builder {
+        private final int V = G.V();
+        private final int[][] out = new int[V][];
+        private final int[] outSize = new int[V];
+        private final int[][] in = new int[V][];
+        private final int[] inSize = new int[V];
+        private final boolean[] contracted = new boolean[V];
+        private final int[] deleted = new int[V];        // neighbors already contracted
+
+        // witness search workspace
+        private final double[] dist = new double[V];
+        private final int[] reached = new int[V];
+        private int reachedSize;
+        private final int[] target = new int[V];         // target[w] == v when w is an out-neighbor of v
+        private final DoubleIndexMinPQ pq = new DoubleIndexMinPQ(V, 4);
+
+        // shortcuts found by shortcuts(), as pairs of edges in and out of v
+        private int[] found = new int[16];
+        private int foundSize;
+
+        void build() {
+            int[][] up = new int[V][];
+            int[][] down = new int[V][];
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+            Arrays.fill(target, -1);
+
+            for (int v = 0; v < V; v++) {
+                out[v] = new int[4];
+                in[v] = new int[4];
+                if (!G.checkConnection(v)) contracted[v] = true;    // never part of the hierarchy
+            }
+            for (int v = 0; v < V; v++) {
+                if (contracted[v]) continue;
+                for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+                    int w = G.to(e);
+                    if (w != v && !contracted[w]) link(v, w, G.weight(e), e, -1, -1);
+                }
+            }
+
+            DoubleIndexMinPQ order = new DoubleIndexMinPQ(V, 4);
+            for (int v = 0; v < V; v++)
+                if (!contracted[v]) order.insert(v, importance(v));
+
+            int next = 0;
+            while (!order.isEmpty()) {
+                int v = order.delMin();
+                double p = importance(v);
+                if (!order.isEmpty() && p > order.minKey()) {
+                    order.insert(v, p);                     // no longer the least important
+                    continue;
+                }
+                up[v] = Arrays.copyOf(out[v], outSize[v]);
+                down[v] = Arrays.copyOf(in[v], inSize[v]);
+                rank[v] = next++;
+                contract(v);
+                for (int e : up[v]) {
+                    int w = edgeTo[e];
+                    deleted[w]++;
+                    if (order.contains(w)) order.change(w, importance(w));
+                }
+                for (int e : down[v]) {
+                    int u = edgeFrom[e];
+                    deleted[u]++;
+                    if (order.contains(u)) order.change(u, importance(u));
+                }
+            }
+
+            upOffsets = new int[V + 1];
+            downOffsets = new int[V + 1];
+            for (int v = 0; v < V; v++) {
+                upOffsets[v+1] = upOffsets[v] + (up[v] == null ? 0 : up[v].length);
+                downOffsets[v+1] = downOffsets[v] + (down[v] == null ? 0 : down[v].length);
+            }
+            upEdges = new int[upOffsets[V]];
+            downEdges = new int[downOffsets[V]];
+            for (int v = 0; v < V; v++) {
+                if (up[v] != null) System.arraycopy(up[v], 0, upEdges, upOffsets[v], up[v].length);
+                if (down[v] != null) System.arraycopy(down[v], 0, downEdges, downOffsets[v], down[v].length);
+            }
+        }
+
+        // edge difference plus contracted neighbors
+        private double importance(int v) {
+            return shortcuts(v, ESTIMATE_LIMIT) - outSize[v] - inSize[v] + deleted[v];
+        }
+
+        // remove v from the remaining graph, adding the shortcuts it needs
+        private void contract(int v) {
+            shortcuts(v, SETTLE_LIMIT);
+            int[] pairs = Arrays.copyOf(found, foundSize);
+            contracted[v] = true;
+            for (int i = 0; i < outSize[v]; i++)
+                remove(in, inSize, edgeTo[out[v][i]], out[v][i]);
+            for (int i = 0; i < inSize[v]; i++)
+                remove(out, outSize, edgeFrom[in[v][i]], in[v][i]);
+            for (int i = 0; i < pairs.length; i += 2) {
+                int a = pairs[i], b = pairs[i+1];
+                link(edgeFrom[a], edgeTo[b], edgeWeight[a] + edgeWeight[b], -1, a, b);
+            }
+        }
+
+        // find the shortcuts contracting v would need, leaving them in found[];
+        // returns how many. A lower limit gives a quicker estimate that may
+        // miss witnesses
+        private int shortcuts(int v, int limit) {
+            foundSize = 0;
+            if (outSize[v] == 0) return 0;
+            double maxOut = 0.0;
+            for (int i = 0; i < outSize[v]; i++)
+                maxOut = Math.max(maxOut, edgeWeight[out[v][i]]);
+
+            for (int i = 0; i < inSize[v]; i++) {
+                int a = in[v][i];
+                int u = edgeFrom[a];
+                witness(u, v, edgeWeight[a] + maxOut, outSize[v], limit);
+                for (int j = 0; j < outSize[v]; j++) {
+                    int b = out[v][j];
+                    int w = edgeTo[b];
+                    if (w == u) continue;
+                    if (dist[w] > edgeWeight[a] + edgeWeight[b]) {
+                        if (foundSize + 2 > found.length) found = Arrays.copyOf(found, 2 * found.length);
+                        found[foundSize++] = a;
+                        found[foundSize++] = b;
+                    }
+                }
+                clear();
+            }
+            return foundSize / 2;
+        }
+
+        // Dijkstra from u in the remaining graph without v, until the
+        // targets out of v are settled, the distance passes max or limit
+        // vertices are settled; leaves distances in dist[]
+        private void witness(int u, int v, double max, int targets, int limit) {
+            for (int i = 0; i < outSize[v]; i++)
+                target[edgeTo[out[v][i]]] = v;
+            dist[u] = 0.0;
+            reached[reachedSize++] = u;
+            pq.insert(u, 0.0);
+            int settled = 0;
+            while (!pq.isEmpty() && pq.minKey() <= max && settled++ < limit) {
+                int x = pq.delMin();
+                if (target[x] == v && --targets == 0) break;
+                for (int i = 0; i < outSize[x]; i++) {
+                    int e = out[x][i];
+                    int y = edgeTo[e];
+                    if (y == v) continue;
+                    double d = dist[x] + edgeWeight[e];
+                    if (d < dist[y]) {
+                        if (dist[y] == Double.POSITIVE_INFINITY) reached[reachedSize++] = y;
+                        dist[y] = d;
+                        if (pq.contains(y)) pq.decrease(y, d);
+                        else                pq.insert(y, d);
+                    }
+                }
+            }
+        }
+
+        // reset the witness search workspace
+        private void clear() {
+            while (!pq.isEmpty()) pq.delMin();
+            for (int i = 0; i < reachedSize; i++)
+                dist[reached[i]] = Double.POSITIVE_INFINITY;
+            reachedSize = 0;
+        }
+
+        // add edge v->w to the remaining graph unless one at least as light exists
+        private void link(int v, int w, double weight, int slot, int first, int second) {
+            for (int i = 0; i < outSize[v]; i++) {
+                int e = out[v][i];
+                if (edgeTo[e] != w) continue;
+                if (edgeWeight[e] <= weight) return;
+                int f = newEdge(v, w, weight, slot, first, second);
+                out[v][i] = f;
+                for (int j = 0; j < inSize[w]; j++)
+                    if (in[w][j] == e) in[w][j] = f;
+                return;
+            }
+            int e = newEdge(v, w, weight, slot, first, second);
+            append(out, outSize, v, e);
+            append(in, inSize, w, e);
+        }
+
+        private void append(int[][] lists, int[] sizes, int v, int e) {
+            if (sizes[v] == lists[v].length) lists[v] = Arrays.copyOf(lists[v], 2 * sizes[v]);
+            lists[v][sizes[v]++] = e;
+        }
+
+        private void remove(int[][] lists, int[] sizes, int v, int e) {
+            for (int i = 0; i < sizes[v]; i++) {
+                if (lists[v][i] == e) {
+                    lists[v][i] = lists[v][--sizes[v]];
+                    return;
+                }
+            }
+        }
+    }
+
+
+   /**************************************************************
+    * Queries
+    **************************************************************/
+
+    // has G changed since the hierarchy was built?
+    public boolean isStale() {
+        return G.version() != version;
+    }
+
+    // edges in the hierarchy, shortcuts included
+    public int edges() {
+        return edges;
+    }
+
+    // number of shortcuts added by the contraction
+    public int shortcuts() {
+        int count = 0;
+        for (int e = 0; e < edges; e++)
+            if (edgeSlot[e] == -1) count++;
+        return count;
+    }
+
+    // position of v in the contraction order
+    public int rank(int v) {
+        return rank[v];
+    }
+
+   /**
+     * Slots of G on a shortest s->t path, in order, or null if there is
+     * none. Both searches only climb to higher ranks; a direction stops once
+     * its queue minimum reaches the best s->t length found. The workspace is
+     * shared, so queries on one hierarchy run one at a time.
+     */
+    public synchronized int[] path(int s, int t) {
+        if (!G.checkConnection(s) || !G.checkConnection(t)) return null;
+        if (s == t) return new int[0];
+
+        reached = 0;
+        double mu = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        touch(s);
+        distF[s] = 0.0;
+        parentF[s] = -1;
+        pqF.insert(s, 0.0);
+        touch(t);
+        distB[t] = 0.0;
+        parentB[t] = -1;
+        pqB.insert(t, 0.0);
+
+        while (true) {
+            boolean forward = !pqF.isEmpty() && pqF.minKey() < mu;
+            boolean backward = !pqB.isEmpty() && pqB.minKey() < mu;
+            if (forward && backward) forward = pqF.minKey() <= pqB.minKey();
+            else if (!backward && !forward) break;
+
+            if (forward) {
+                int v = pqF.delMin();
+                if (distB[v] < Double.POSITIVE_INFINITY && distF[v] + distB[v] < mu) {
+                    mu = distF[v] + distB[v];
+                    meet = v;
+                }
+                if (stalled(v, distF, downOffsets, downEdges, edgeFrom)) continue;
+                for (int i = upOffsets[v]; i < upOffsets[v+1]; i++) {
+                    int e = upEdges[i];
+                    int w = edgeTo[e];
+                    double d = distF[v] + edgeWeight[e];
+                    if (d < distF[w]) {
+                        touch(w);
+                        distF[w] = d;
+                        parentF[w] = e;
+                        if (pqF.contains(w)) pqF.decrease(w, d);
+                        else                 pqF.insert(w, d);
+                        if (d + distB[w] < mu) {
+                            mu = d + distB[w];
+                            meet = w;
+                        }
+                    }
+                }
+            }
+            else {
+                int v = pqB.delMin();
+                if (distF[v] < Double.POSITIVE_INFINITY && distF[v] + distB[v] < mu) {
+                    mu = distF[v] + distB[v];
+                    meet = v;
+                }
+                if (stalled(v, distB, upOffsets, upEdges, edgeTo)) continue;
+                for (int i = downOffsets[v]; i < downOffsets[v+1]; i++) {
+                    int e = downEdges[i];
+                    int u = edgeFrom[e];
+                    double d = distB[v] + edgeWeight[e];
+                    if (d < distB[u]) {
+                        touch(u);
+                        distB[u] = d;
+                        parentB[u] = e;
+                        if (pqB.contains(u)) pqB.decrease(u, d);
+                        else                 pqB.insert(u, d);
+                        if (distF[u] + d < mu) {
+                            mu = distF[u] + d;
+                            meet = u;
+                        }
+                    }
+                }
+            }
+        }
+
+        // hierarchy edges s->meet, then meet->t
+        int[] route = null;
+        if (meet != -1) {
+            int forward = 0, backward = 0;
+            for (int x = meet; parentF[x] != -1; x = edgeFrom[parentF[x]]) forward++;
+            for (int x = meet; parentB[x] != -1; x = edgeTo[parentB[x]]) backward++;
+            route = new int[forward + backward];
+            int i = forward;
+            for (int x = meet; parentF[x] != -1; x = edgeFrom[parentF[x]]) route[--i] = parentF[x];
+            i = forward;
+            for (int x = meet; parentB[x] != -1; x = edgeTo[parentB[x]]) route[i++] = parentB[x];
+        }
+
+        // reset the workspace
+        while (!pqF.isEmpty()) pqF.delMin();
+        while (!pqB.isEmpty()) pqB.delMin();
+        for (int i = 0; i < reached; i++) {
+            distF[touched[i]] = Double.POSITIVE_INFINITY;
+            distB[touched[i]] = Double.POSITIVE_INFINITY;
+        }
+
+        return route == null ? null : unpack(route);
+    }
+
+    // stall-on-demand: if a higher vertex the search already reached has a
+    // shorter way into v than dist[v], no shortest path continues upward
+    // from v, so its edges need not be relaxed
+    private boolean stalled(int v, double[] dist, int[] offsets, int[] list, int[] other) {
+        for (int i = offsets[v]; i < offsets[v+1]; i++) {
+            int e = list[i];
+            if (dist[other[e]] + edgeWeight[e] < dist[v]) return true;
+        }
+        return false;
+    }
+
+    // remember v for the reset, the first time either search reaches it
+    private void touch(int v) {
+        if (distF[v] == Double.POSITIVE_INFINITY && distB[v] == Double.POSITIVE_INFINITY)
+            touched[reached++] = v;
+    }
+
+    // replace each shortcut on route by the edges of G it stands for
+    private int[] unpack(int[] route) {
+        int[] slots = new int[route.length];
+        int n = 0;
+        int[] stack = new int[16];
+        for (int r : route) {
+            int top = 0;
+            stack[top++] = r;
+            while (top > 0) {
+                int e = stack[--top];
+                if (edgeSlot[e] != -1) {
+                    if (n == slots.length) slots = Arrays.copyOf(slots, 2 * n);
+                    slots[n++] = edgeSlot[e];
+                }
+                else {
+                    if (top + 2 > stack.length) stack = Arrays.copyOf(stack, 2 * stack.length);
+                    stack[top++] = edgeSecond[e];
+                    stack[top++] = edgeFirst[e];
+                }
+            }
+        }
+        return Arrays.copyOf(slots, n);
+    }
+
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+        long start = System.nanoTime();
+        ContractionHierarchy ch = new ContractionHierarchy(G);
+        StdOut.printf("Contracted %d vertices in %.1f ms, %d edges plus %d shortcuts\n",
+                      G.V(), (System.nanoTime() - start) / 1e6, G.E(), ch.shortcuts());
+
+        int s = 0, t = G.V() - 1;
+        int[] path = ch.path(s, t);
+        if (path == null) {
+            StdOut.printf("%d to %d         no path\n", s, t);
+            return;
+        }
+        StdOut.printf("%d to %d  ", s, t);
+        for (int e : path)
+            StdOut.print(G.edge(e) + "   ");
+        StdOut.println();
+    }
+}
@@ -0,0 +1,326 @@
+/*************************************************************************
+ *  Compilation:  javac DeltaSteppingSP.java
+ *  Execution:    java DeltaSteppingSP graph1.txt [threads]
+ *  Dependencies: Graph.java Stack.java DirectedEdge.java ShortestPaths.java
+ *
+ *  Delta-stepping single source shortest paths (Meyer and Sanders).
+ *  Vertices are kept in buckets of width delta by tentative distance.
+ *  The lowest nonempty bucket is emptied in phases: every vertex in it
+ *  relaxes its light edges (weight at most delta) at the same time,
+ *  which may put vertices back into the same bucket, until the bucket
+ *  stays empty; then all vertices removed from it relax their heavy
+ *  edges once. Within a phase the vertices are independent, so the
+ *  phase is split over a pool of threads; searches with the same number
+ *  of threads share one ForkJoinPool.
+ *
+ *  With delta below the smallest weight this is Dijkstra's algorithm;
+ *  with delta above the largest it is Bellman-Ford. The default takes
+ *  the largest weight over the average outdegree, which keeps a few
+ *  vertices per bucket without much re-relaxing.
+ *
+ *  Distances are the bits of doubles in an AtomicLongArray and are read
+ *  without locking. They only go down, so an edge that does not beat
+ *  the distance read takes no lock; one that does checks again under
+ *  one of a fixed set of locks, and distTo[] and edgeTo[] of a vertex
+ *  change together there, so the path tree stays consistent. Like
+ *  DijkstraSP, down nodes are skipped. The graph must not change while
+ *  the search runs.
+ *
+ *************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class DeltaSteppingSP implements ShortestPaths {
+    private static final int LOCKS = 1024;      // lock stripes, a power of 2
+    private static final int CUTOFF = 2048;     // smaller phases run on the calling thread
+
+    // pools[t] runs the searches on t threads; its workers are daemons
+    private static final Map<Integer, ForkJoinPool> pools = new HashMap<Integer, ForkJoinPool>();
+
+    private final AtomicLongArray distTo;   // bits of distTo[v] = length of shortest s->v path
+    private final int[] edgeTo;          // edgeTo[v] = slot of last edge on shortest s->v path, -1 if none
+    private final Object[] locks = new Object[LOCKS];
+    private final Graph G;               // slots in edgeTo[] refer to G
+    private final double delta;
+
+    // bucket j lives in buckets[j % buckets.length]; all tentative distances
+    // lie within the largest weight of the current bucket, so the buckets
+    // in use never wrap onto each other
+    private int[][] buckets;
+    private int[] sizes;
+    private long queued;                 // entries in all buckets
+
+    private final int[] mark;            // mark[v] == stamp when v is already in the current list
+    private int stamp;
+
+    // one thread per processor and the default delta
+    public DeltaSteppingSP(Graph G, int s) {
+        this(G, s, Runtime.getRuntime().availableProcessors(), 0.0);
+    }
+
+    // delta 0 picks the default
+    public DeltaSteppingSP(Graph G, int s, int threads, double delta) {
+        if (threads < 1) throw new RuntimeException("Need at least one thread");
+        if (delta < 0) throw new RuntimeException("delta must be nonnegative");
+        this.G = G;
+        G.compact();                         // the threads only ever read G
+        int V = G.V();
+        distTo = new AtomicLongArray(V);
+        edgeTo = new int[V];
+        mark = new int[V];
+        long infinity = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+        for (int v = 0; v < V; v++) {
+            distTo.set(v, infinity);
+            edgeTo[v] = -1;
+        }
+        for (int i = 0; i < LOCKS; i++)
+            locks[i] = new Object();
+
+        double max = G.maxWeight();
+        if (delta == 0.0) delta = V == 0 || G.E() == 0 || max == 0.0 ? 1.0 : max / Math.max(1.0, (double) G.E() / V);
+        this.delta = delta;
+        if (max / delta > 1 << 24) throw new RuntimeException("delta too small for weights up to " + max);
+        int n = (int) Math.ceil(max / delta) + 2;
+        buckets = new int[n][];
+        sizes = new int[n];
+        for (int i = 0; i < n; i++)
+            buckets[i] = new int[4];
+
+        distTo.set(s, Double.doubleToLongBits(0.0));
+        add(s);
+        run(threads > 1 ? pool(threads) : null, threads);
+    }
+
+    // the pool shared by all searches on this many threads
+    private static synchronized ForkJoinPool pool(int threads) {
+        ForkJoinPool pool = pools.get(threads);
+        if (pool == null) {
+            pool = new ForkJoinPool(threads);
+            pools.put(threads, pool);
+        }
+        return pool;
+    }
+
+    // distance of v found so far
+    private double dist(int v) {
+        return Double.longBitsToDouble(distTo.get(v));
+    }
+
+    private long bucket(double d) {
+        return (long) (d / delta);
+    }
+
+    // queue v in the bucket of its distance
+    private void add(int v) {
+        int b = (int) (bucket(dist(v)) % buckets.length);
+        if (sizes[b] == buckets[b].length) buckets[b] = Arrays.copyOf(buckets[b], 2 * sizes[b]);
+        buckets[b][sizes[b]++] = v;
+        queued++;
+    }
+
+    private void run(ExecutorService pool, int threads) {
+        Relaxer[] relaxers = new Relaxer[threads];
+        for (int t = 0; t < threads; t++)
+            relaxers[t] = new Relaxer();
+
+        int[] frontier = new int[16];        // vertices of the current phase
+        int[] removed = new int[16];         // vertices removed from the current bucket
+        for (long j = 0; queued > 0; j++) {
+            int b = (int) (j % buckets.length);
+            if (sizes[b] == 0) continue;
+
+            int r = 0;
+            while (sizes[b] > 0) {
+                // take the bucket, dropping entries whose distance has moved
+                // to a lower bucket and repeats of the same vertex
+                stamp++;
+                int f = 0;
+                if (frontier.length < sizes[b]) frontier = new int[buckets[b].length];
+                for (int i = 0; i < sizes[b]; i++) {
+                    int v = buckets[b][i];
+                    if (mark[v] == stamp || bucket(dist(v)) != j) continue;
+                    mark[v] = stamp;
+                    frontier[f++] = v;
+                }
+                queued -= sizes[b];
+                sizes[b] = 0;
+
+                for (int i = 0; i < f; i++) {
+                    int v = frontier[i];
+                    if (r == removed.length) removed = Arrays.copyOf(removed, 2 * r);
+                    removed[r++] = v;
+                }
+                relax(pool, relaxers, frontier, f, true);
+            }
+
+            // each removed vertex once, now with its final distance
+            stamp++;
+            int h = 0;
+            for (int i = 0; i < r; i++) {
+                int v = removed[i];
+                if (mark[v] == stamp) continue;
+                mark[v] = stamp;
+                removed[h++] = v;
+            }
+            relax(pool, relaxers, removed, h, false);
+        }
+    }
+
+    // relax the light or the heavy edges of vertices[0..n-1], then queue
+    // every vertex whose distance went down
+    private void relax(ExecutorService pool, Relaxer[] relaxers, int[] vertices, int n, boolean light) {
+        if (n == 0) return;
+        int parts = pool == null || n < CUTOFF ? 1 : relaxers.length;
+        if (parts == 1) {
+            relaxers[0].set(vertices, 0, n, light);
+            relaxers[0].relax(false);
+        }
+        else {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (int t = 0; t < parts; t++) {
+                relaxers[t].set(vertices, (int) ((long) n * t / parts), (int) ((long) n * (t + 1) / parts), light);
+                tasks.add(relaxers[t]);
+            }
+            try {
+                for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+            }
+            catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted during shortest path search", ie);
+            }
+            catch (ExecutionException ee) {
+                if (ee.getCause() instanceof RuntimeException) throw (RuntimeException) ee.getCause();
+                throw new RuntimeException(ee.getCause());
+            }
+        }
+
+        stamp++;
+        for (int t = 0; t < parts; t++) {
+            Relaxer x = relaxers[t];
+            for (int i = 0; i < x.size; i++) {
+                int w = x.improved[i];
+                if (mark[w] == stamp) continue;
+                mark[w] = stamp;
+                add(w);
+            }
+        }
+    }
+
+    // relaxes the edges of one range of vertices; improved[] collects the
+    // vertices whose distance went down and is reused from phase to phase
+    private class Relaxer implements Callable<Void> {
+        private int[] vertices;
+        private int lo, hi;
+        private boolean light;
+        private int[] improved = new int[16];
+        private int size;
+
+        void set(int[] vertices, int lo, int hi, boolean light) {
+            this.vertices = vertices;
+            this.lo = lo;
+            this.hi = hi;
+            this.light = light;
+            size = 0;
+        }
+
+        public Void call() {
+            relax(true);
+            return null;
+        }
+
+        // with other Relaxers running, distTo[] and edgeTo[] are only written under the locks
+        void relax(boolean shared) {
+            for (int i = lo; i < hi; i++) {
+                int v = vertices[i];
+                if (!G.checkConnection(v)) continue;     // down nodes carry no paths
+                double dv = dist(v);
+                for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+                    double weight = G.weight(e);
+                    if ((weight <= delta) != light) continue;
+                    int w = G.to(e);
+                    if (!G.checkConnection(w)) continue;
+                    double d = dv + weight;
+                    if (d >= dist(w)) continue;          // distances only go down, so this stays true
+                    if (shared) {
+                        synchronized (locks[w & (LOCKS - 1)]) {
+                            if (d >= dist(w)) continue;
+                            distTo.set(w, Double.doubleToLongBits(d));
+                            edgeTo[w] = e;
+                        }
+                    }
+                    else {
+                        distTo.set(w, Double.doubleToLongBits(d));
+                        edgeTo[w] = e;
+                    }
+                    if (size == improved.length) improved = Arrays.copyOf(improved, 2 * size);
+                    improved[size++] = w;
+                }
+            }
+        }
+    }
+
+    // length of shortest path from s to v
+    public double distTo(int v) {
+        return dist(v);
+    }
+
+    // is there a path from s to v?
+    public boolean hasPathTo(int v) {
+        return dist(v) < Double.POSITIVE_INFINITY;
+    }
+
+    // shortest path from s to v as an Iterable, null if no such path
+    public Iterable<DirectedEdge> pathTo(int v) {
+        if (!hasPathTo(v)) return null;
+        Stack<DirectedEdge> path = new Stack<DirectedEdge>();
+        for (int e = edgeTo[v]; e != -1; e = edgeTo[G.from(e)]) {
+            path.push(G.edge(e));
+        }
+        return path;
+    }
+
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        // compare with DijkstraSP from every source
+        for (int s = 0; s < Math.min(G.V(), 100); s++) {
+            DeltaSteppingSP sp = new DeltaSteppingSP(G, s, threads, 0.0);
+            DijkstraSP check = new DijkstraSP(G, s);
+            for (int v = 0; v < G.V(); v++) {
+                if (sp.distTo(v) != check.distTo(v))
+                    throw new RuntimeException("distance " + s + " to " + v + " differs: " + sp.distTo(v) + " vs " + check.distTo(v));
+            }
+        }
+
+        int s = 0;
+        long start = System.nanoTime();
+        DeltaSteppingSP sp = new DeltaSteppingSP(G, s, threads, 0.0);
+        StdOut.printf("Shortest paths from %d on %d threads in %.1f ms\n", s, threads, (System.nanoTime() - start) / 1e6);
+        if (G.V() > 20) return;
+        StdOut.println("------------------------");
+        for (int v = 0; v < G.V(); v++) {
+            if (sp.hasPathTo(v)) {
+                StdOut.printf("%d to %d (%.2f)  ", s, v, sp.distTo(v));
+                for (DirectedEdge e : sp.pathTo(v)) {
+                    StdOut.print(e + "   ");
+                }
+                StdOut.println();
+            }
+            else {
+                StdOut.printf("%d to %d         no path\n", s, v);
+            }
+        }
+    }
+}
@@ -5,46 +5,89 @@
 /*************************************************************************
  *  Compilation:  javac DijkstraSP.java
  *  Execution:    java DijkstraSP V E
- *  Dependencies: EdgeWeightedDigraph.java IndexMinPQ.java Stack.java DirectedEdge.java
+ *  Dependencies: EdgeWeightedDigraph.java DoubleIndexMinPQ.java Stack.java DirectedEdge.java
+ *                Subgraph.java
  *
- *  Dijkstra's algorithm. Computes the shortest path tree.
+ *  Dijkstra's algorithm. Computes the shortest path tree, or only as
+ *  much of it as needed to reach a given set of targets.
  *  Assumes all weights are nonnegative.
  *
+ *  Only the vertices and edges of a Subgraph are used; given a Graph,
+ *  that is the nodes that are up.
+ *
  *************************************************************************/
 
-public class DijkstraSP {
+public class DijkstraSP implements ShortestPaths {
     private double[] distTo;          // distTo[v] = distance  of shortest s->v path
-    private DirectedEdge[] edgeTo;    // edgeTo[v] = last edge on shortest s->v path
-    private IndexMinPQ<Double> pq;    // priority queue of vertices
+    private int[] edgeTo;             // edgeTo[v] = slot of last edge on shortest s->v path, -1 if none
+    private DoubleIndexMinPQ pq;      // priority queue of vertices
+    private Graph G;                  // slots in edgeTo[] refer to G
 
     public DijkstraSP(Graph G, int s) {
+        this(new Subgraph(G), s, null);
+    }
+
+    // stops as soon as the shortest s->t path is known
+    public DijkstraSP(Graph G, int s, int t) {
+        this(new Subgraph(G), s, new int[] { t });
+    }
+
+    public DijkstraSP(Subgraph H, int s) {
+        this(H, s, null);
+    }
+
+    public DijkstraSP(Subgraph H, int s, int t) {
+        this(H, s, new int[] { t });
+    }
+
+    // stops as soon as the shortest paths from s to all of targets are known;
+    // distTo() and pathTo() are then only exact for the targets and for
+    // vertices closer to s than the farthest target. null means every vertex.
+    public DijkstraSP(Subgraph H, int s, int[] targets) {
+        if (H.isStale()) throw new RuntimeException("Subgraph view is stale, G has new edges or vertices");
+        Graph G = H.graph();
+        this.G = G;
         distTo = new double[G.V()];
-        edgeTo = new DirectedEdge[G.V()];
-        for (int v = 0; v < G.V(); v++)
+        edgeTo = new int[G.V()];
+        for (int v = 0; v < G.V(); v++) {
             distTo[v] = Double.POSITIVE_INFINITY;
+            edgeTo[v] = -1;
+        }
         distTo[s] = 0.0;
 
+        boolean[] isTarget = null;
+        int remaining = 0;              // targets not settled yet
+        if (targets != null) {
+            isTarget = new boolean[G.V()];
+            for (int t : targets) {
+                if (!isTarget[t]) remaining++;
+                isTarget[t] = true;
+            }
+        }
+
         // relax vertices in order of distance from s
-        pq = new IndexMinPQ<Double>(G.V());
+        pq = new DoubleIndexMinPQ(G.V(), DoubleIndexMinPQ.arity(G.V(), G.E()));
         pq.insert(s, distTo[s]);
         while (!pq.isEmpty()) {
             int v = pq.delMin();
-            for (DirectedEdge e : G.adj(v))
-                if(G.checkConnection(e.from()) == true && G.checkConnection(e.to()) == true) //included by me to check if the node was up or not
-                    relax(e);
+            if (isTarget != null && isTarget[v] && --remaining == 0) break;
+            if (!H.hasVertex(v)) continue;     // down nodes carry no paths
+            for (int e = G.begin(v), end = G.end(v); e < end; e++)
+                if (H.hasVertex(G.to(e)) && H.hasEdge(e))
+                    relax(v, e);
         }
 
         // check optimality conditions
-        assert check(G, s);
+        assert targets != null || check(H, s);
     }
 
-    // relax edge e and update pq if changed
-    private void relax(DirectedEdge e) {
-        int v = e.from(), w = e.to();
-        if (distTo[w] > distTo[v] + e.weight()) {
-            distTo[w] = distTo[v] + e.weight();
+    // relax edge e leaving v and update pq if changed
+    private void relax(int v, int e) {
+        int w = G.to(e);
+        if (distTo[w] > distTo[v] + G.weight(e)) {
+            distTo[w] = distTo[v] + G.weight(e);
             edgeTo[w] = e;
-            if (pq.contains(w)) pq.change(w, distTo[w]);
+            if (pq.contains(w)) pq.decrease(w, distTo[w]);
             else                pq.insert(w, distTo[w]);
         }
     }
@@ -63,8 +106,8 @@ public class DijkstraSP {
     public Iterable<DirectedEdge> pathTo(int v) {
         if (!hasPathTo(v)) return null;
         Stack<DirectedEdge> path = new Stack<DirectedEdge>();
-        for (DirectedEdge e = edgeTo[v]; e != null; e = edgeTo[e.from()]) {
-            path.push(e);
+        for (int e = edgeTo[v]; e != -1; e = edgeTo[G.from(e)]) {
+            path.push(G.edge(e));
         }
         return path;
     }
@@ -73,35 +116,37 @@ public class DijkstraSP {
     // check optimality conditions:
     // (i) for all edges e:            distTo[e.to()] <= distTo[e.from()] + e.weight()
     // (ii) for all edge e on the SPT: distTo[e.to()] == distTo[e.from()] + e.weight()
-    private boolean check(Graph G, int s) {
+    private boolean check(Subgraph H, int s) {
 
         // check that edge weights are nonnegative
-        for (DirectedEdge e : G.edges()) {
-            if (e.weight() < 0) {
+        for (int e = 0; e < G.E(); e++) {
+            if (G.weight(e) < 0) {
                 System.err.println("negative edge weight detected");
                 return false;
             }
         }
 
         // check that distTo[v] and edgeTo[v] are consistent
-        if (distTo[s] != 0.0 || edgeTo[s] != null) {
+        if (distTo[s] != 0.0 || edgeTo[s] != -1) {
             System.err.println("distTo[s] and edgeTo[s] inconsistent");
             return false;
         }
         for (int v = 0; v < G.V(); v++) {
             if (v == s) continue;
-            if (edgeTo[v] == null && distTo[v] != Double.POSITIVE_INFINITY) {
+            if (edgeTo[v] == -1 && distTo[v] != Double.POSITIVE_INFINITY) {
                 System.err.println("distTo[] and edgeTo[] inconsistent");
                 return false;
             }
         }
 
-        // check that all edges e = v->w satisfy distTo[w] <= distTo[v] + e.weight()
+        // check that all edges e = v->w in the view satisfy distTo[w] <= distTo[v] + e.weight()
         for (int v = 0; v < G.V(); v++) {
-            for (DirectedEdge e : G.adj(v)) {
-                int w = e.to();
-                if (distTo[v] + e.weight() < distTo[w]) {
-                    System.err.println("edge " + e + " not relaxed");
+            if (!H.hasVertex(v)) continue;
+            for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+                int w = G.to(e);
+                if (!H.hasVertex(w) || !H.hasEdge(e)) continue;
+                if (distTo[v] + G.weight(e) < distTo[w]) {
+                    System.err.println("edge " + G.edge(e) + " not relaxed");
                     return false;
                 }
             }
@@ -109,8 +154,8 @@ public class DijkstraSP {
 
         // check that all edges e = v->w on SPT satisfy distTo[w] == distTo[v] + e.weight()
         for (int w = 0; w < G.V(); w++) {
-            if (edgeTo[w] == null) continue;
-            DirectedEdge e = edgeTo[w];
+            if (edgeTo[w] == -1) continue;
+            DirectedEdge e = G.edge(edgeTo[w]);
             int v = e.from();
             if (w != e.to()) return false;
             if (distTo[v] + e.weight() != distTo[w]) {
@@ -0,0 +1,262 @@
+/*************************************************************************
+ *  Compilation:  javac DoubleIndexMinPQ.java
+ *  Execution:    java DoubleIndexMinPQ [V E]
+ *  Dependencies: Graph.java IndexMinPQ.java
+ *
+ *  Indexed PQ implementation using a d-ary heap, specialized to
+ *  double keys. Same operations as IndexMinPQ<Double>, but the keys
+ *  live in a double[] so nothing is boxed and comparisons are plain
+ *  < on primitives instead of compareTo() calls.
+ *
+ *  With d children per node the heap is log_d N deep, so decrease()
+ *  swims past fewer levels while delMin() compares more children per
+ *  level. Dijkstra and Prim do up to E decreases but only V delMins,
+ *  so denser graphs want a wider heap; see arity().
+ *
+ *  % java DoubleIndexMinPQ 100000 2000000
+ *  runs a Dijkstra workload with each heap and prints the timings
+ *
+ *********************************************************************/
+
+public class DoubleIndexMinPQ {
+    private int N;           // number of elements on PQ
+    private int d;           // children per node
+    private int[] pq;        // d-ary heap using 1-based indexing
+    private int[] qp;        // inverse of pq - qp[pq[i]] = pq[qp[i]] = i
+    private double[] keys;   // keys[i] = priority of i
+
+    // binary heap
+    public DoubleIndexMinPQ(int NMAX) {
+        this(NMAX, 2);
+    }
+
+    // heap with d children per node
+    public DoubleIndexMinPQ(int NMAX, int d) {
+        if (d < 2) throw new RuntimeException("Heap needs at least 2 children per node");
+        this.d = d;
+        keys = new double[NMAX + 1];
+        pq   = new int[NMAX + 1];
+        qp   = new int[NMAX + 1];
+        for (int i = 0; i <= NMAX; i++) qp[i] = -1;
+    }
+
+    // is the priority queue empty?
+    public boolean isEmpty() { return N == 0; }
+
+    // is k an index on the priority queue?
+    public boolean contains(int k) {
+        return qp[k] != -1;
+    }
+
+    // number of keys in the priority queue
+    public int size() {
+        return N;
+    }
+
+    // associate key with index k
+    public void insert(int k, double key) {
+        if (contains(k)) throw new RuntimeException("item is already in pq");
+        N++;
+        qp[k] = N;
+        pq[N] = k;
+        keys[k] = key;
+        swim(N);
+    }
+
+    // return the index associated with a minimal key
+    public int min() {
+        if (N == 0) throw new RuntimeException("Priority queue underflow");
+        return pq[1];
+    }
+
+    // return a minimal key
+    public double minKey() {
+        if (N == 0) throw new RuntimeException("Priority queue underflow");
+        return keys[pq[1]];
+    }
+
+    // return the key associated with index k
+    public double keyOf(int k) {
+        if (!contains(k)) throw new RuntimeException("item is not in pq");
+        return keys[k];
+    }
+
+    // delete a minimal key and returns its associated index
+    public int delMin() {
+        if (N == 0) throw new RuntimeException("Priority queue underflow");
+        int min = pq[1];
+        exch(1, N--);
+        sink(1);
+        qp[min] = -1;            // delete
+        pq[N+1] = -1;            // not needed
+        return min;
+    }
+
+    // change the key associated with index k
+    public void change(int k, double key) {
+        if (!contains(k)) throw new RuntimeException("item is not in pq");
+        keys[k] = key;
+        swim(qp[k]);
+        sink(qp[k]);
+    }
+
+    // decrease the key associated with index k; only swims, so this is
+    // the cheap path for Dijkstra and Prim relaxations
+    public void decrease(int k, double key) {
+        if (!contains(k)) throw new RuntimeException("item is not in pq");
+        if (keys[k] <= key) throw new RuntimeException("illegal decrease");
+        keys[k] = key;
+        swim(qp[k]);
+    }
+
+    // increase the key associated with index k
+    public void increase(int k, double key) {
+        if (!contains(k)) throw new RuntimeException("item is not in pq");
+        if (keys[k] >= key) throw new RuntimeException("illegal increase");
+        keys[k] = key;
+        sink(qp[k]);
+    }
+
+
+   /**************************************************************
+    * General helper functions
+    **************************************************************/
+    private boolean greater(int i, int j) {
+        return keys[pq[i]] > keys[pq[j]];
+    }
+
+    private void exch(int i, int j) {
+        int swap = pq[i]; pq[i] = pq[j]; pq[j] = swap;
+        qp[pq[i]] = i; qp[pq[j]] = j;
+    }
+
+
+   /**************************************************************
+    * Heap helper functions
+    * The children of node k are d*(k-1)+2 through d*k+1.
+    **************************************************************/
+    private void swim(int k)  {
+        while (k > 1 && greater((k-2)/d + 1, k)) {
+            exch(k, (k-2)/d + 1);
+            k = (k-2)/d + 1;
+        }
+    }
+
+    private void sink(int k) {
+        while (d*(k-1) + 2 <= N) {
+            int j = d*(k-1) + 2;
+            int last = Math.min(j + d - 1, N);
+            for (int c = j + 1; c <= last; c++)
+                if (greater(j, c)) j = c;
+            if (!greater(k, j)) break;
+            exch(k, j);
+            k = j;
+        }
+    }
+
+
+   /**
+     * Return a good number of children per node for Dijkstra or Prim on a
+     * graph with V vertices and E edges. Sparse graphs do about as many
+     * delMin() as decrease() calls and keep the binary heap; from 2 edges per
+     * vertex a 4-ary heap won the benchmark below, and 8-ary only pulled ahead
+     * at around a hundred edges per vertex.
+     */
+    public static int arity(int V, int E) {
+        long density = V == 0 ? 0 : (long) E / V;
+        if (density >= 64) return 8;
+        if (density >= 2)  return 4;
+        return 2;
+    }
+
+
+    // Dijkstra from s on G using pq, returning the sum of the distances
+    private static double dijkstra(Graph G, int s, DoubleIndexMinPQ pq) {
+        double[] distTo = new double[G.V()];
+        for (int v = 0; v < G.V(); v++) distTo[v] = Double.POSITIVE_INFINITY;
+        distTo[s] = 0.0;
+        pq.insert(s, 0.0);
+        double sum = 0.0;
+        while (!pq.isEmpty()) {
+            int v = pq.delMin();
+            sum += distTo[v];
+            for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+                int w = G.to(e);
+                if (distTo[w] > distTo[v] + G.weight(e)) {
+                    distTo[w] = distTo[v] + G.weight(e);
+                    if (pq.contains(w)) pq.decrease(w, distTo[w]);
+                    else                pq.insert(w, distTo[w]);
+                }
+            }
+        }
+        return sum;
+    }
+
+    // the same with the generic binary heap
+    private static double dijkstra(Graph G, int s, IndexMinPQ<Double> pq) {
+        double[] distTo = new double[G.V()];
+        for (int v = 0; v < G.V(); v++) distTo[v] = Double.POSITIVE_INFINITY;
+        distTo[s] = 0.0;
+        pq.insert(s, 0.0);
+        double sum = 0.0;
+        while (!pq.isEmpty()) {
+            int v = pq.delMin();
+            sum += distTo[v];
+            for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+                int w = G.to(e);
+                if (distTo[w] > distTo[v] + G.weight(e)) {
+                    distTo[w] = distTo[v] + G.weight(e);
+                    if (pq.contains(w)) pq.change(w, distTo[w]);
+                    else                pq.insert(w, distTo[w]);
+                }
+            }
+        }
+        return sum;
+    }
+
+
+    public static void main(String[] args) {
+        if (args.length == 2) {
+            // benchmark: Dijkstra from a few sources with each kind of heap
+            int V = Integer.parseInt(args[0]);
+            int E = Integer.parseInt(args[1]);
+            Graph G = new Graph(V, E);
+            G.compact();
+            int runs = 5;
+            System.out.println("V = " + V + ", E = " + E + ", arity() picks " + arity(V, E));
+            for (int round = 0; round < 2; round++) {     // the first round warms up the JIT
+                long start = System.nanoTime();
+                double check = 0.0;
+                for (int s = 0; s < runs; s++) check += dijkstra(G, s, new IndexMinPQ<Double>(V));
+                if (round == 1) System.out.printf("IndexMinPQ<Double>     %8.1f ms  (%.1f)\n", (System.nanoTime() - start) / 1e6 / runs, check);
+                for (int d = 2; d <= 16; d *= 2) {
+                    start = System.nanoTime();
+                    check = 0.0;
+                    for (int s = 0; s < runs; s++) check += dijkstra(G, s, new DoubleIndexMinPQ(V, d));
+                    if (round == 1) System.out.printf("DoubleIndexMinPQ d = %2d %8.1f ms  (%.1f)\n", d, (System.nanoTime() - start) / 1e6 / runs, check);
+                }
+            }
+            return;
+        }
+
+        // insert a bunch of keys
+        double[] keys = { 0.5, 3.25, 1.0, 7.5, 0.25, 2.0, 6.0, 1.5, 4.0, 5.5 };
+
+        for (int d = 2; d <= 4; d++) {
+            DoubleIndexMinPQ pq = new DoubleIndexMinPQ(keys.length, d);
+            for (int i = 0; i < keys.length; i++) {
+                pq.insert(i, keys[i]);
+            }
+
+            // lower a few keys, then delete and print each one
+            pq.decrease(3, 0.125);
+            pq.decrease(8, 1.25);
+            System.out.println(d + "-ary heap:");
+            while (!pq.isEmpty()) {
+                double key = pq.minKey();
+                int i = pq.delMin();
+                System.out.println(i + " " + key);
+            }
+        }
+    }
+}
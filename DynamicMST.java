@@ -0,0 +1,693 @@
+/*************************************************************************
+ *  Compilation:  javac DynamicMST.java
+ *  Execution:    java DynamicMST graph1.txt
+ *  Dependencies: Graph.java UF.java KruskalMST.java Bag.java DirectedEdge.java
+ *                SpanningForest.java PrimMST.java
+ *
+ *  Minimum spanning forest of the nodes that are up, kept up to date as
+ *  the graph changes instead of recomputed. Like DijkstraSP, an edge
+ *  only counts while both its ends are up; every edge counts as
+ *  undirected.
+ *
+ *  The forest is held in a link-cut tree (Sleator and Tarjan), with a
+ *  node for every vertex and one for every forest edge, carrying its
+ *  weight. Any path in the forest is then one splay tree away, and so
+ *  is its heaviest edge, in amortized logarithmic time:
+ *
+ *    - an edge that got lighter, or appeared, or whose ends came up,
+ *      joins the forest if its ends were apart, or else replaces the
+ *      heaviest edge on the forest path between them if that one is
+ *      heavier
+ *    - a forest edge that got heavier, or lost an end to a down node,
+ *      is cut out; the lightest edge across the cut, possibly itself,
+ *      takes its place. To find it, both halves are walked at the same
+ *      time until the smaller one is done, and only the edges of the
+ *      smaller half are scanned.
+ *
+ *  Only the replacement search can cost more than logarithmic time, and
+ *  only in the size of the smaller half.
+ *
+ *  The caller reports each change through edgeChanged(), edgeAdded(),
+ *  vertexDown() and vertexUp(). Changes it does not report make the
+ *  forest stale, and refresh() builds it again; so does the next report,
+ *  when it finds G has changed by more than the change reported.
+ *
+ *************************************************************************/
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class DynamicMST implements SpanningForest {
+    private final Graph G;
+    private long version;                // G.version() the forest is correct for
+
+    // edges, numbered by slot in G when the forest was built and in order
+    // of edgeAdded() after that
+    private int E;
+    private int built;                   // edges in G when the forest was built
+    private int[] from;
+    private int[] to;
+    private double[] weight;
+    private int[] node;                  // node[f] = link-cut node of forest edge f, -1 if f is not in the forest
+
+    // vertices
+    private int V;
+    private boolean[] up;                // up[v] = v was up at the last change reported
+    private int[][] incident;            // incident[v][0..degree[v]-1] = edges with v at either end
+    private int[] degree;
+    private int[][] tree;                // tree[v][0..treeDegree[v]-1] = forest edges with v at either end
+    private int[] treeDegree;
+
+    // forest edges, for edges()
+    private int[] forest;
+    private int[] position;              // position[f] = index of f in forest[], if it is there
+    private int size;
+
+    // link-cut tree, with a node for every vertex and every forest edge
+    private int[] vertexNode;            // vertexNode[v] = node of vertex v
+    private int[] left, right, parent;
+    private boolean[] flip;              // children to be swapped, pushed down lazily
+    private double[] value;              // weight of the edge of an edge node, -infinity for a vertex
+    private int[] heaviest;              // heaviest[x] = node of largest value in the splay subtree of x
+    private int[] edgeOf;                // edgeOf[x] = edge of node x, -1 for a vertex
+    private int[] free;                  // edge nodes not in use
+    private int freeCount;
+    private int nodes;                   // nodes handed out so far
+    private int[] stack = new int[16];   // splay path
+
+    // workspace for the replacement search
+    private int[] mark;
+    private int stamp;
+    private int[] queueA, queueB;
+
+    public DynamicMST(Graph G) {
+        this.G = G;
+        refresh();
+    }
+
+   /**
+     * Build the forest from scratch.
+     */
+    public void refresh() {
+        G.compact();
+        V = G.V();
+        E = G.E();
+        built = E;
+        from = new int[Math.max(E, 1)];
+        to = new int[Math.max(E, 1)];
+        weight = new double[Math.max(E, 1)];
+        node = new int[Math.max(E, 1)];
+        up = new boolean[V];
+        incident = new int[V][];
+        degree = new int[V];
+        tree = new int[V][];
+        treeDegree = new int[V];
+        for (int v = 0; v < V; v++) {
+            up[v] = G.checkConnection(v);
+            incident[v] = new int[2];
+            tree[v] = new int[2];
+        }
+        forest = new int[Math.max(V, 1)];
+        position = new int[Math.max(E, 1)];
+        size = 0;
+        left = right = parent = heaviest = edgeOf = free = null;   // growNodes() starts over
+        flip = null;
+        value = null;
+        nodes = freeCount = 0;
+        growNodes(2 * V + 1);
+        vertexNode = new int[V];
+        for (int v = 0; v < V; v++)
+            vertexNode[v] = newNode();
+        mark = new int[V];
+        queueA = new int[V];
+        queueB = new int[V];
+
+        for (int v = 0; v < V; v++) {
+            for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+                from[e] = v;
+                to[e] = G.to(e);
+                weight[e] = G.weight(e);
+                node[e] = -1;
+                attach(e);
+            }
+        }
+
+        // the forest, by way of Kruskal on the keys of KruskalMST; edge ids
+        // are still slots here
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(E - 1));
+        long low = (1L << bits) - 1;
+        long[] keys = new long[E];
+        boolean dropped = false;
+        for (int e = 0; e < E; e++) {
+            long key = KruskalMST.order(weight[e]);
+            if ((key & low) != 0) dropped = true;
+            keys[e] = (key & ~low) | e;
+        }
+        Arrays.parallelSort(keys);
+        if (dropped) KruskalMST.untie(G, keys, 0, E, bits);
+        UF uf = new UF(V);
+        for (int i = 0; i < E && size < V - 1; i++) {
+            int e = (int) (keys[i] & low);
+            if (!live(e) || uf.connected(from[e], to[e])) continue;
+            uf.union(from[e], to[e]);
+            enter(e);
+        }
+
+        // hang every tree from one of its vertices, each node on a path of its own
+        stamp = 1;
+        for (int r = 0; r < V; r++) {
+            if (mark[r] == stamp) continue;
+            mark[r] = stamp;
+            int head = 0, tail = 0;
+            queueA[tail++] = r;
+            while (head < tail) {
+                int x = queueA[head++];
+                for (int i = 0; i < treeDegree[x]; i++) {
+                    int f = tree[x][i];
+                    int y = other(f, x);
+                    if (mark[y] == stamp) continue;
+                    mark[y] = stamp;
+                    parent[node[f]] = vertexNode[x];
+                    parent[vertexNode[y]] = node[f];
+                    queueA[tail++] = y;
+                }
+            }
+        }
+        version = G.version();
+    }
+
+    // has G changed in a way that was not reported?
+    public boolean isStale() {
+        return G.version() != version;
+    }
+
+    // do both ends of edge f count?
+    private boolean live(int f) {
+        return up[from[f]] && up[to[f]] && from[f] != to[f];
+    }
+
+    // record edge f at both its ends
+    private void attach(int f) {
+        int v = from[f], w = to[f];
+        incident[v] = push(incident[v], degree[v]++, f);
+        if (w != v) incident[w] = push(incident[w], degree[w]++, f);
+    }
+
+
+   /**************************************************************
+    * Reporting changes
+    **************************************************************/
+
+   /**
+     * The weights of the edges between v and w have changed, as after
+     * changeEdge(v, w, weight).
+     */
+    public void edgeChanged(int v, int w) {
+        if (v < 0 || v >= G.V() || w < 0 || w >= G.V()) return;     // changeEdge() ignores these too
+        if (G.version() != version + writes(v, w)) {
+            refresh();
+            return;
+        }
+        sync(v, w);
+        changed(v, w);
+        if (w != v) changed(w, v);
+        version = G.version();
+    }
+
+    // changeEdge() sets the first v->w edge in G. G puts edges added later
+    // first, so that is the last one added here if there is one, or else
+    // the one with the lowest slot when the forest was built
+    private void changed(int v, int w) {
+        int e = G.slot(v, w);
+        if (e == -1) return;
+        int f = -1;
+        for (int i = 0; i < degree[v]; i++) {
+            int g = incident[v][i];
+            if (from[g] != v || to[g] != w) continue;
+            if (f == -1 || (g >= built ? g > f : f < built && g < f)) f = g;
+        }
+        if (f == -1) return;
+        double old = weight[f];
+        weight[f] = G.weight(e);
+        if (!live(f) || weight[f] == old) return;
+        if (node[f] != -1) {
+            if (weight[f] < old) setValue(node[f], weight[f]);    // still the lightest way across
+            else                 replace(f);
+        }
+        else if (weight[f] < old) insert(f);
+    }
+
+   /**
+     * G has a new edge v->w, as after addNewEdge(). Vertices added to G
+     * since the last change come along.
+     */
+    public void edgeAdded(int v, int w, double x) {
+        // the edge, and each vertex added since with increase()
+        if (G.version() != version + 1 + (G.V() - V)) {
+            refresh();
+            return;
+        }
+        if (G.V() > V) grow(G.V());
+        if (E == from.length) {
+            int n = 2 * E;
+            from = Arrays.copyOf(from, n);
+            to = Arrays.copyOf(to, n);
+            weight = Arrays.copyOf(weight, n);
+            node = Arrays.copyOf(node, n);
+            position = Arrays.copyOf(position, n);
+        }
+        int f = E++;
+        from[f] = v;
+        to[f] = w;
+        weight[f] = x;
+        node[f] = -1;
+        attach(f);
+        // addNewEdge() brings v up
+        if (!sync(v, w) && live(f)) insert(f);
+        version = G.version();
+    }
+
+   /**
+     * v has gone down.
+     */
+    public void vertexDown(int v) {
+        if (G.version() != version + 1) {
+            refresh();
+            return;
+        }
+        version = G.version();           // even when v was down already
+        if (!up[v]) return;
+        up[v] = false;
+        while (treeDegree[v] > 0)
+            replace(tree[v][treeDegree[v] - 1]);
+    }
+
+   /**
+     * v is back up.
+     */
+    public void vertexUp(int v) {
+        if (G.version() != version + 1) {
+            refresh();
+            return;
+        }
+        version = G.version();
+        if (up[v]) return;
+        bringUp(v);
+    }
+
+    private void bringUp(int v) {
+        up[v] = true;
+        for (int i = 0; i < degree[v]; i++) {
+            int f = incident[v][i];
+            if (live(f)) insert(f);
+        }
+    }
+
+    // catch up with v or w coming up without being reported; true if either did
+    private boolean sync(int v, int w) {
+        boolean any = false;
+        if (!up[v] && G.checkConnection(v)) { bringUp(v); any = true; }
+        if (!up[w] && G.checkConnection(w)) { bringUp(w); any = true; }
+        return any;
+    }
+
+    // number of weights changeEdge(v, w, weight) writes, each a new version of G
+    private int writes(int v, int w) {
+        int e = G.slot(v, w);
+        int r = G.slot(w, v);
+        return (e != -1 ? 1 : 0) + (r != -1 && r != e ? 1 : 0);
+    }
+
+    // room for vertices up to n-1
+    private void grow(int n) {
+        up = Arrays.copyOf(up, n);
+        incident = Arrays.copyOf(incident, n);
+        degree = Arrays.copyOf(degree, n);
+        tree = Arrays.copyOf(tree, n);
+        treeDegree = Arrays.copyOf(treeDegree, n);
+        vertexNode = Arrays.copyOf(vertexNode, n);
+        for (int v = V; v < n; v++) {
+            up[v] = G.checkConnection(v);
+            incident[v] = new int[2];
+            tree[v] = new int[2];
+            vertexNode[v] = newNode();
+        }
+        if (forest.length < n) forest = Arrays.copyOf(forest, n);
+        mark = Arrays.copyOf(mark, n);
+        queueA = Arrays.copyOf(queueA, n);
+        queueB = Arrays.copyOf(queueB, n);
+        V = n;
+    }
+
+
+   /**************************************************************
+    * Updates to the forest
+    **************************************************************/
+
+    // live non-forest edge f has appeared or got lighter
+    private void insert(int f) {
+        if (node[f] != -1) return;
+        int v = from[f], w = to[f];
+        if (!connected(v, w)) {
+            link(f);
+            return;
+        }
+        int g = edgeOf[pathMax(vertexNode[v], vertexNode[w])];
+        if (weight[g] > weight[f]) {
+            cut(g);
+            link(f);
+        }
+    }
+
+    // forest edge f got heavier or went dead: cut it out and put the
+    // lightest live edge across the cut in its place
+    private void replace(int f) {
+        int v = from[f], w = to[f];
+        cut(f);
+
+        // walk both halves a vertex at a time until one is done
+        stamp += 2;
+        int sideA = stamp, sideB = stamp + 1;
+        int headA = 0, tailA = 0, headB = 0, tailB = 0;
+        queueA[tailA++] = v;
+        mark[v] = sideA;
+        queueB[tailB++] = w;
+        mark[w] = sideB;
+        while (headA < tailA && headB < tailB) {
+            int x = queueA[headA++];
+            for (int i = 0; i < treeDegree[x]; i++) {
+                int y = other(tree[x][i], x);
+                if (mark[y] != sideA) { mark[y] = sideA; queueA[tailA++] = y; }
+            }
+            x = queueB[headB++];
+            for (int i = 0; i < treeDegree[x]; i++) {
+                int y = other(tree[x][i], x);
+                if (mark[y] != sideB) { mark[y] = sideB; queueB[tailB++] = y; }
+            }
+        }
+        int[] small = headA == tailA ? queueA : queueB;
+        int n = headA == tailA ? tailA : tailB;
+        int side = headA == tailA ? sideA : sideB;
+
+        // lightest live edge leaving the smaller half
+        int best = -1;
+        for (int i = 0; i < n; i++) {
+            int x = small[i];
+            for (int j = 0; j < degree[x]; j++) {
+                int g = incident[x][j];
+                if (!live(g) || mark[other(g, x)] == side) continue;
+                if (best == -1 || weight[g] < weight[best]) best = g;
+            }
+        }
+        if (best != -1) link(best);
+    }
+
+    private int other(int f, int v) {
+        return from[f] == v ? to[f] : from[f];
+    }
+
+    // add edge f to the forest
+    private void link(int f) {
+        int x = enter(f);
+        link(vertexNode[from[f]], x);
+        link(x, vertexNode[to[f]]);
+    }
+
+    // give forest edge f its node and list it, returning the node
+    private int enter(int f) {
+        int x = newNode();
+        edgeOf[x] = f;
+        value[x] = weight[f];
+        heaviest[x] = x;
+        node[f] = x;
+
+        int v = from[f], w = to[f];
+        tree[v] = push(tree[v], treeDegree[v]++, f);
+        tree[w] = push(tree[w], treeDegree[w]++, f);
+        position[f] = size;
+        forest[size++] = f;
+        return x;
+    }
+
+    // take edge f out of the forest
+    private void cut(int f) {
+        int x = node[f];
+        cut(vertexNode[from[f]], x);
+        cut(x, vertexNode[to[f]]);
+        node[f] = -1;
+        edgeOf[x] = -1;
+        if (freeCount == free.length) free = Arrays.copyOf(free, 2 * freeCount + 1);
+        free[freeCount++] = x;
+
+        unlist(from[f], f);
+        unlist(to[f], f);
+        int last = forest[--size];
+        forest[position[f]] = last;
+        position[last] = position[f];
+    }
+
+    // drop f from the forest edges at v
+    private void unlist(int v, int f) {
+        for (int i = 0; i < treeDegree[v]; i++) {
+            if (tree[v][i] == f) {
+                tree[v][i] = tree[v][--treeDegree[v]];
+                return;
+            }
+        }
+    }
+
+    private static int[] push(int[] a, int n, int v) {
+        if (n == a.length) a = Arrays.copyOf(a, 2 * n);
+        a[n] = v;
+        return a;
+    }
+
+
+   /**************************************************************
+    * Link-cut tree
+    **************************************************************/
+
+    private int newNode() {
+        int x = freeCount > 0 ? free[--freeCount] : nodes++;
+        if (x >= left.length) growNodes(2 * x + 1);
+        left[x] = right[x] = parent[x] = -1;
+        flip[x] = false;
+        value[x] = Double.NEGATIVE_INFINITY;
+        heaviest[x] = x;
+        edgeOf[x] = -1;
+        return x;
+    }
+
+    private void growNodes(int n) {
+        int old = left == null ? 0 : left.length;
+        left = left == null ? new int[n] : Arrays.copyOf(left, n);
+        right = right == null ? new int[n] : Arrays.copyOf(right, n);
+        parent = parent == null ? new int[n] : Arrays.copyOf(parent, n);
+        flip = flip == null ? new boolean[n] : Arrays.copyOf(flip, n);
+        value = value == null ? new double[n] : Arrays.copyOf(value, n);
+        heaviest = heaviest == null ? new int[n] : Arrays.copyOf(heaviest, n);
+        edgeOf = edgeOf == null ? new int[n] : Arrays.copyOf(edgeOf, n);
+        if (free == null) free = new int[16];
+        for (int x = old; x < n; x++) {
+            left[x] = right[x] = parent[x] = -1;
+            value[x] = Double.NEGATIVE_INFINITY;
+            heaviest[x] = x;
+            edgeOf[x] = -1;
+        }
+    }
+
+    // is x the root of its splay tree?
+    private boolean isRoot(int x) {
+        int p = parent[x];
+        return p == -1 || (left[p] != x && right[p] != x);
+    }
+
+    // recompute heaviest[x] from its children
+    private void pull(int x) {
+        int m = x;
+        int l = left[x], r = right[x];
+        if (l != -1 && value[heaviest[l]] > value[m]) m = heaviest[l];
+        if (r != -1 && value[heaviest[r]] > value[m]) m = heaviest[r];
+        heaviest[x] = m;
+    }
+
+    // hand a pending flip of x down to its children
+    private void push(int x) {
+        if (!flip[x]) return;
+        int l = left[x];
+        left[x] = right[x];
+        right[x] = l;
+        if (left[x] != -1)  flip[left[x]] = !flip[left[x]];
+        if (right[x] != -1) flip[right[x]] = !flip[right[x]];
+        flip[x] = false;
+    }
+
+    private void rotate(int x) {
+        int p = parent[x], g = parent[p];
+        boolean pRoot = isRoot(p);
+        if (left[p] == x) {
+            left[p] = right[x];
+            if (right[x] != -1) parent[right[x]] = p;
+            right[x] = p;
+        }
+        else {
+            right[p] = left[x];
+            if (left[x] != -1) parent[left[x]] = p;
+            left[x] = p;
+        }
+        parent[p] = x;
+        parent[x] = g;
+        if (!pRoot) {
+            if (left[g] == p) left[g] = x;
+            else              right[g] = x;
+        }
+        pull(p);
+        pull(x);
+    }
+
+    // make x the root of its splay tree
+    private void splay(int x) {
+        // push flips down from the root of the splay tree first
+        int n = 0;
+        for (int y = x; ; y = parent[y]) {
+            stack = push(stack, n++, y);
+            if (isRoot(y)) break;
+        }
+        while (n > 0)
+            push(stack[--n]);
+
+        while (!isRoot(x)) {
+            int p = parent[x];
+            if (!isRoot(p)) {
+                int g = parent[p];
+                if ((left[g] == p) == (left[p] == x)) rotate(p);
+                else                                  rotate(x);
+            }
+            rotate(x);
+        }
+    }
+
+    // make the path from the root of x's tree to x one splay tree, rooted at x
+    private void access(int x) {
+        int last = -1;
+        for (int y = x; y != -1; y = parent[y]) {
+            splay(y);
+            right[y] = last;
+            pull(y);
+            last = y;
+        }
+        splay(x);
+    }
+
+    // make x the root of its tree
+    private void makeRoot(int x) {
+        access(x);
+        flip[x] = !flip[x];
+    }
+
+    // are vertices v and w in one tree of the forest?
+    private boolean connected(int v, int w) {
+        return findRoot(vertexNode[v]) == findRoot(vertexNode[w]);
+    }
+
+    private int findRoot(int x) {
+        access(x);
+        while (true) {
+            push(x);
+            if (left[x] == -1) break;
+            x = left[x];
+        }
+        splay(x);
+        return x;
+    }
+
+    private void link(int x, int y) {
+        makeRoot(x);
+        parent[x] = y;
+    }
+
+    // x and y are joined by a tree edge
+    private void cut(int x, int y) {
+        makeRoot(x);
+        access(y);
+        left[y] = -1;
+        parent[x] = -1;
+        pull(y);
+    }
+
+    // node of the heaviest edge on the path from x to y
+    private int pathMax(int x, int y) {
+        makeRoot(x);
+        access(y);
+        return heaviest[y];
+    }
+
+    private void setValue(int x, double v) {
+        access(x);
+        value[x] = v;
+        pull(x);
+    }
+
+
+    // return iterator of edges in the forest
+    public Iterable<DirectedEdge> edges() {
+        Bag<DirectedEdge> mst = new Bag<DirectedEdge>();
+        for (int i = 0; i < size; i++) {
+            int f = forest[i];
+            mst.add(new DirectedEdge(from[f], to[f], weight[f]));
+        }
+        return mst;
+    }
+
+    // return weight of the forest
+    public double weight() {
+        double total = 0.0;
+        for (int i = 0; i < size; i++)
+            total += weight[forest[i]];
+        return total;
+    }
+
+
+    // compare with PrimMST, which also spans the nodes that are up
+    private static void check(Graph G, DynamicMST mst, String after) {
+        double expected = new PrimMST(G).weight();
+        if (Math.abs(mst.weight() - expected) > 1E-9 * Math.max(1.0, expected))
+            throw new RuntimeException("after " + after + ": weight " + mst.weight() + " vs " + expected);
+    }
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+        DynamicMST mst = new DynamicMST(G);
+        check(G, mst, "start");
+        StdOut.println("total weight = " + mst.weight());
+
+        // random changes, each checked against a fresh PrimMST
+        Random random = new Random(1501);
+        for (int round = 0; round < 200; round++) {
+            int v = random.nextInt(G.V());
+            int kind = random.nextInt(5);
+            String change;
+            if (kind == 0)      { G.downConnect(v); mst.vertexDown(v); change = "D " + v; }
+            else if (kind == 1) { G.upConnect(v);   mst.vertexUp(v);   change = "U " + v; }
+            else if (kind == 2) {
+                int w = random.nextInt(G.V());
+                double weight = 1 + random.nextInt(20);
+                G.addNewEdge(new DirectedEdge(v, w, weight));
+                mst.edgeAdded(v, w, weight);
+                G.addNewEdge(new DirectedEdge(w, v, weight));
+                mst.edgeAdded(w, v, weight);
+                change = "A " + v + " " + w + " " + weight;
+            }
+            else {
+                if (G.outdegree(v) == 0) continue;
+                int w = G.to(G.begin(v) + random.nextInt(G.outdegree(v)));
+                double weight = 1 + random.nextInt(20);
+                G.changeEdge(v, w, weight);
+                mst.edgeChanged(v, w);
+                change = "C " + v + " " + w + " " + weight;
+            }
+            check(G, mst, change);
+        }
+        StdOut.println("200 changes repaired, weight matches PrimMST: " + mst.weight());
+    }
+}
@@ -0,0 +1,311 @@
+/*************************************************************************
+ *  Compilation:  javac DynamicSP.java
+ *  Execution:    java DynamicSP graph1.txt
+ *  Dependencies: Graph.java DoubleIndexMinPQ.java Stack.java DirectedEdge.java
+ *                ShortestPaths.java
+ *
+ *  Shortest paths from one source, kept up to date as the graph changes
+ *  instead of recomputed, in the spirit of Ramalingam and Reps. After a
+ *  change only the vertices whose distance can move are visited:
+ *
+ *    - an edge that got heavier, or a node that went down, can only hurt
+ *      the vertices below it in the shortest path tree. That subtree is
+ *      cut loose, each of its vertices takes the best offer from an
+ *      in-neighbor outside it, and Dijkstra runs within the subtree.
+ *    - an edge that got lighter, or a node that came back up, can only
+ *      help. Dijkstra starts from the vertices it improves and stops
+ *      where nothing improves any more.
+ *
+ *  The caller reports each change through edgeChanged(), vertexDown()
+ *  and vertexUp(). Changes it does not report, or new edges and
+ *  vertices (which move the slots), make the tree stale; refresh() then
+ *  recomputes it from scratch, and so does the next report when it finds
+ *  G has changed by more than the change reported. Down nodes are
+ *  treated as in DijkstraSP.
+ *
+ *************************************************************************/
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class DynamicSP implements ShortestPaths {
+    private final Graph G;               // slots in edgeTo[] refer to G
+    private final int s;
+    private double[] distTo;             // distTo[v] = length of shortest s->v path
+    private int[] edgeTo;                // edgeTo[v] = slot of last edge on shortest s->v path, -1 if none
+    private long version;                // G.version() distTo[] is correct for
+    private int V, E;                    // size of G when the slots were taken
+
+    // workspace for repairs
+    private DoubleIndexMinPQ pq;
+    private boolean[] affected;
+    private int[] stack;
+
+    public DynamicSP(Graph G, int s) {
+        if (s < 0 || s >= G.V()) throw new RuntimeException("Source " + s + " out of range");
+        this.G = G;
+        this.s = s;
+        refresh();
+    }
+
+   /**
+     * Recompute the tree from scratch.
+     */
+    public void refresh() {
+        V = G.V();
+        E = G.E();
+        distTo = new double[V];
+        edgeTo = new int[V];
+        affected = new boolean[V];
+        stack = new int[16];
+        pq = new DoubleIndexMinPQ(V, DoubleIndexMinPQ.arity(V, E));
+        Arrays.fill(distTo, Double.POSITIVE_INFINITY);
+        Arrays.fill(edgeTo, -1);
+        distTo[s] = 0.0;
+        pq.insert(s, 0.0);
+        propagate();
+        version = G.version();
+    }
+
+    // the source
+    public int source() {
+        return s;
+    }
+
+    // has G changed in a way that was not reported?
+    public boolean isStale() {
+        return G.version() != version;
+    }
+
+    // has G changed by anything but the given number of versions, one
+    // reported change, since the tree was last correct?
+    private boolean unreported(int versions) {
+        return G.V() != V || G.E() != E || G.version() != version + versions;
+    }
+
+
+   /**************************************************************
+    * Reporting changes
+    **************************************************************/
+
+   /**
+     * The weights of the edges between v and w have changed, in either
+     * direction, as after changeEdge(v, w, weight).
+     */
+    public void edgeChanged(int v, int w) {
+        if (v < 0 || v >= G.V() || w < 0 || w >= G.V()) return;     // changeEdge() ignores these too
+        if (unreported(writes(v, w))) {
+            refresh();
+            return;
+        }
+        int roots = 0;
+        for (int e = G.begin(v), end = G.end(v); e < end; e++)
+            if (G.to(e) == w && heavier(e)) stack = push(stack, roots++, w);
+        for (int e = G.begin(w), end = G.end(w); e < end; e++)
+            if (G.to(e) == v && heavier(e)) stack = push(stack, roots++, v);
+        if (roots > 0) cut(roots);
+
+        // then everything that got lighter
+        for (int e = G.begin(v), end = G.end(v); e < end; e++)
+            if (G.to(e) == w) offer(v, e);
+        for (int e = G.begin(w), end = G.end(w); e < end; e++)
+            if (G.to(e) == v) offer(w, e);
+        propagate();
+        version = G.version();
+    }
+
+    // number of weights changeEdge(v, w, weight) writes, each a new version of G
+    private int writes(int v, int w) {
+        int e = G.slot(v, w);
+        int r = G.slot(w, v);
+        return (e != -1 ? 1 : 0) + (r != -1 && r != e ? 1 : 0);
+    }
+
+    // is tree edge e now longer than the path it gave its head?
+    private boolean heavier(int e) {
+        int w = G.to(e);
+        return edgeTo[w] == e && distTo[G.from(e)] + G.weight(e) > distTo[w];
+    }
+
+   /**
+     * v has gone down.
+     */
+    public void vertexDown(int v) {
+        if (unreported(1)) {
+            refresh();
+            return;
+        }
+        int roots = 0;
+        if (v != s) stack = push(stack, roots++, v);
+        else {
+            // the source keeps distance 0 but reaches nothing
+            for (int e = G.begin(s), end = G.end(s); e < end; e++)
+                if (edgeTo[G.to(e)] == e) stack = push(stack, roots++, G.to(e));
+        }
+        if (roots > 0) cut(roots);
+        propagate();
+        version = G.version();
+    }
+
+   /**
+     * v is back up.
+     */
+    public void vertexUp(int v) {
+        if (unreported(1)) {
+            refresh();
+            return;
+        }
+        if (v == s) offer(s, -1);
+        else {
+            for (int i = G.inBegin(v), end = G.inEnd(v); i < end; i++) {
+                int u = G.inFrom(i);
+                if (G.checkConnection(u)) offer(u, G.inSlot(i));
+            }
+        }
+        propagate();
+        version = G.version();
+    }
+
+
+   /**************************************************************
+    * Repairs
+    **************************************************************/
+
+    // distances got worse for the subtrees below stack[0..roots-1]: reset
+    // them, let each vertex take the best in-edge from outside, and queue
+    private void cut(int roots) {
+        // collect the subtrees; stack[0..n-1] ends up holding all of them
+        int n = 0;
+        for (int i = 0; i < roots; i++) {
+            int r = stack[i];
+            if (affected[r]) continue;
+            affected[r] = true;
+            stack[n++] = r;
+        }
+        for (int i = 0; i < n; i++) {
+            int x = stack[i];
+            for (int e = G.begin(x), end = G.end(x); e < end; e++) {
+                int w = G.to(e);
+                if (edgeTo[w] == e && !affected[w]) {
+                    affected[w] = true;
+                    stack = push(stack, n++, w);
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            int x = stack[i];
+            distTo[x] = Double.POSITIVE_INFINITY;
+            edgeTo[x] = -1;
+        }
+        for (int i = 0; i < n; i++) {
+            int x = stack[i];
+            if (!G.checkConnection(x)) continue;
+            for (int j = G.inBegin(x), end = G.inEnd(x); j < end; j++) {
+                int u = G.inFrom(j);
+                if (affected[u] || !G.checkConnection(u)) continue;
+                offer(u, G.inSlot(j));
+            }
+        }
+        for (int i = 0; i < n; i++)
+            affected[stack[i]] = false;
+    }
+
+    // queue the head of edge e from u if e improves it; e == -1 restores the source
+    private void offer(int u, int e) {
+        if (e == -1) {
+            distTo[s] = 0.0;
+            if (!pq.contains(s)) pq.insert(s, 0.0);
+            return;
+        }
+        int w = G.to(e);
+        if (!G.checkConnection(u) || !G.checkConnection(w) || distTo[u] == Double.POSITIVE_INFINITY) return;
+        double d = distTo[u] + G.weight(e);
+        if (d < distTo[w]) {
+            distTo[w] = d;
+            edgeTo[w] = e;
+            if (pq.contains(w)) pq.decrease(w, d);
+            else                pq.insert(w, d);
+        }
+    }
+
+    // Dijkstra from whatever is queued
+    private void propagate() {
+        while (!pq.isEmpty()) {
+            int v = pq.delMin();
+            if (!G.checkConnection(v)) continue;     // down nodes carry no paths
+            for (int e = G.begin(v), end = G.end(v); e < end; e++)
+                offer(v, e);
+        }
+    }
+
+    private static int[] push(int[] a, int n, int v) {
+        if (n == a.length) a = Arrays.copyOf(a, 2 * n);
+        a[n] = v;
+        return a;
+    }
+
+
+    // length of shortest path from s to v
+    public double distTo(int v) {
+        return distTo[v];
+    }
+
+    // is there a path from s to v?
+    public boolean hasPathTo(int v) {
+        return distTo[v] < Double.POSITIVE_INFINITY;
+    }
+
+    // shortest path from s to v as an Iterable, null if no such path
+    public Iterable<DirectedEdge> pathTo(int v) {
+        if (!hasPathTo(v)) return null;
+        Stack<DirectedEdge> path = new Stack<DirectedEdge>();
+        for (int e = edgeTo[v]; e != -1; e = edgeTo[G.from(e)]) {
+            path.push(G.edge(e));
+        }
+        return path;
+    }
+
+
+    // compare with DijkstraSP from s
+    private static void check(Graph G, DynamicSP sp, int s, String after) {
+        DijkstraSP check = new DijkstraSP(G, s);
+        for (int v = 0; v < G.V(); v++) {
+            if (sp.distTo(v) != check.distTo(v))
+                throw new RuntimeException("after " + after + ": distance " + s + " to " + v + " differs: " + sp.distTo(v) + " vs " + check.distTo(v));
+            if (!sp.hasPathTo(v)) continue;
+            double length = 0.0;
+            for (DirectedEdge e : sp.pathTo(v))
+                length += e.weight();
+            if (length != sp.distTo(v))
+                throw new RuntimeException("after " + after + ": path " + s + " to " + v + " has length " + length);
+        }
+    }
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+        int s = 0;
+        DynamicSP sp = new DynamicSP(G, s);
+        check(G, sp, s, "start");
+
+        // random changes, each checked against a fresh DijkstraSP
+        Random random = new Random(1501);
+        for (int round = 0; round < 200; round++) {
+            int v = random.nextInt(G.V());
+            int kind = random.nextInt(4);
+            String change;
+            if (kind == 0)      { G.downConnect(v); sp.vertexDown(v); change = "D " + v; }
+            else if (kind == 1) { G.upConnect(v);   sp.vertexUp(v);   change = "U " + v; }
+            else {
+                if (G.outdegree(v) == 0) continue;
+                int w = G.to(G.begin(v) + random.nextInt(G.outdegree(v)));
+                double weight = 1 + random.nextInt(20);
+                G.changeEdge(v, w, weight);
+                sp.edgeChanged(v, w);
+                change = "C " + v + " " + w + " " + weight;
+            }
+            check(G, sp, s, change);
+        }
+        StdOut.println("200 changes repaired, all distances match DijkstraSP");
+    }
+}
@@ -0,0 +1,356 @@
+/*************************************************************************
+ *  Compilation:  javac FilterKruskalMST.java
+ *  Execution:    java FilterKruskalMST graph1.txt [threads]
+ *                java FilterKruskalMST V E [threads]
+ *  Dependencies: Graph.java UF.java KruskalMST.java Bag.java DirectedEdge.java
+ *                SpanningForest.java Subgraph.java PrimMST.java
+ *
+ *  Filter-Kruskal (Osipov, Sanders and Singler) to compute a minimum
+ *  spanning forest. Kruskal sorts all E edges, but once the forest is
+ *  complete the rest of the sorted order is never looked at. Here the
+ *  edges are split around a pivot weight instead; the light ones are
+ *  handled first, recursively, and then every heavy edge whose ends are
+ *  already in one component is filtered out before the heavy ones are
+ *  split in turn. Ranges below CUTOFF edges are sorted and scanned as
+ *  in KruskalMST. When E is much larger than V most heavy edges are
+ *  filtered out long before anything sorts them.
+ *
+ *  Edges are the same packed weight and slot longs as in KruskalMST.
+ *  Splitting and filtering a large range are spread over a pool of
+ *  threads, each taking one chunk of it; the recursion and the unions
+ *  stay on the calling thread, so the threads only call UF.root().
+ *
+ *  Every edge counts as undirected. Like PrimMST, only the edges of a
+ *  Subgraph count; given a Graph, those between nodes that are up. The
+ *  graph must not change while the forest is computed.
+ *
+ *************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class FilterKruskalMST implements SpanningForest {
+    private static final int CUTOFF = 4096;          // ranges this small are sorted right away
+    private static final int PARALLEL = 1 << 16;     // smaller ranges are split and filtered on the calling thread
+    private static final int SAMPLE = 15;            // keys the pivot is the median of
+
+    private final Bag<DirectedEdge> mst = new Bag<DirectedEdge>();   // edges in the MST
+    private double weight;                                          // weight of the MST
+
+    private final Graph G;
+    private final int[] tails;           // tails[e] = vertex slot e leaves from
+    private final UF uf;
+    private final long[] keys;           // packed weight and slot of every edge
+    private final long[] scratch;        // room to split keys[] into
+    private final int bits;              // low bits of a key that hold the slot
+    private final long low;
+    private final boolean dropped;       // did any weight lose bits to its slot?
+    private final Random random = new Random(1501);
+    private int remaining;               // edges still missing from a spanning tree
+
+    // one thread per processor
+    public FilterKruskalMST(Graph G) {
+        this(G, Runtime.getRuntime().availableProcessors());
+    }
+
+    public FilterKruskalMST(Graph G, int threads) {
+        this(new Subgraph(G), threads);
+    }
+
+    public FilterKruskalMST(Subgraph H, int threads) {
+        if (threads < 1) throw new RuntimeException("Need at least one thread");
+        if (H.isStale()) throw new RuntimeException("Subgraph view is stale, G has new edges or vertices");
+        Graph G = H.graph();
+        this.G = G;
+        G.compact();                         // the threads only ever read G
+        int V = G.V();
+        int E = G.E();
+        uf = new UF(V);
+        remaining = V - 1;
+
+        tails = new int[E];
+        for (int v = 0; v < V; v++)
+            for (int e = G.begin(v), end = G.end(v); e < end; e++)
+                tails[e] = v;
+
+        int b = 32 - Integer.numberOfLeadingZeros(E - 1);
+        bits = b == 0 ? 1 : b;
+        low = (1L << bits) - 1;
+        keys = new long[E];
+        scratch = new long[E];
+        int m = 0;                           // edges in the view
+        boolean lost = false;
+        for (int e = 0; e < E; e++) {
+            if (!H.hasVertex(tails[e]) || !H.hasVertex(G.to(e)) || !H.hasEdge(e)) continue;
+            long key = KruskalMST.order(G.weight(e));
+            if ((key & low) != 0) lost = true;
+            keys[m++] = (key & ~low) | e;
+        }
+        dropped = lost;
+
+        ExecutorService pool = threads > 1 && m >= PARALLEL ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            filterKruskal(pool, threads, 0, m);
+        }
+        finally {
+            if (pool != null) pool.shutdown();
+        }
+
+        // check optimality conditions
+        assert check(H);
+    }
+
+    // add the forest edges among keys[lo..hi-1]
+    private void filterKruskal(ExecutorService pool, int threads, int lo, int hi) {
+        if (remaining == 0 || lo == hi) return;
+        if (hi - lo <= CUTOFF) {
+            kruskal(lo, hi);
+            return;
+        }
+
+        // split on the high bits only, so weights that share them stay together
+        long pivot = pivot(lo, hi);
+        int mid = split(pool, threads, lo, hi, pivot);
+        if (mid == hi) {
+            // nothing above the pivot, so splitting again would not shrink the range
+            kruskal(lo, hi);
+            return;
+        }
+        filterKruskal(pool, threads, lo, mid);
+        if (remaining == 0) return;
+        int end = filter(pool, threads, mid, hi);
+        filterKruskal(pool, threads, mid, end);
+    }
+
+    // sort keys[lo..hi-1] and take edges in order, as KruskalMST does
+    private void kruskal(int lo, int hi) {
+        Arrays.sort(keys, lo, hi);
+        if (dropped) KruskalMST.untie(G, keys, lo, hi, bits);
+        for (int i = lo; i < hi && remaining > 0; i++) {
+            int e = (int) (keys[i] & low);
+            int v = tails[e], w = G.to(e);
+            if (uf.connected(v, w)) continue;   // v-w would close a cycle
+            uf.union(v, w);
+            mst.add(new DirectedEdge(v, w, G.weight(e)));
+            weight += G.weight(e);
+            remaining--;
+        }
+    }
+
+    // the median high bits of a few keys picked at random
+    private long pivot(int lo, int hi) {
+        long[] sample = new long[SAMPLE];
+        for (int i = 0; i < SAMPLE; i++)
+            sample[i] = keys[lo + random.nextInt(hi - lo)] & ~low;
+        Arrays.sort(sample);
+        return sample[SAMPLE / 2];
+    }
+
+
+   /**************************************************************
+    * Splitting and filtering, chunk by chunk
+    **************************************************************/
+
+    // move the keys of keys[lo..hi-1] whose high bits are at most pivot to
+    // the front, returning where the rest begin
+    private int split(ExecutorService pool, int threads, int lo, int hi, final long pivot) {
+        final Chunk[] chunks = chunks(pool, threads, lo, hi);
+
+        // count the light keys of each chunk, then copy both kinds to their places in scratch[]
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Chunk c : chunks) {
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    for (int i = c.lo; i < c.hi; i++)
+                        if ((keys[i] & ~low) <= pivot) c.kept++;
+                    return null;
+                }
+            });
+        }
+        runAll(pool, tasks);
+
+        int mid = lo;
+        for (Chunk c : chunks)
+            mid += c.kept;
+        int light = lo, heavy = mid;
+        for (Chunk c : chunks) {
+            c.light = light;
+            c.heavy = heavy;
+            light += c.kept;
+            heavy += c.hi - c.lo - c.kept;
+        }
+
+        tasks.clear();
+        for (final Chunk c : chunks) {
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    int light = c.light, heavy = c.heavy;
+                    for (int i = c.lo; i < c.hi; i++) {
+                        if ((keys[i] & ~low) <= pivot) scratch[light++] = keys[i];
+                        else                           scratch[heavy++] = keys[i];
+                    }
+                    return null;
+                }
+            });
+        }
+        runAll(pool, tasks);
+        System.arraycopy(scratch, lo, keys, lo, hi - lo);
+        return mid;
+    }
+
+    // drop the keys of keys[lo..hi-1] whose ends are in one component,
+    // moving the others to the front, and return where they end
+    private int filter(ExecutorService pool, int threads, int lo, int hi) {
+        Chunk[] chunks = chunks(pool, threads, lo, hi);
+
+        // each chunk keeps its crossing edges at its front, then the fronts move together
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Chunk c : chunks) {
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    int n = c.lo;
+                    for (int i = c.lo; i < c.hi; i++) {
+                        int e = (int) (keys[i] & low);
+                        if (uf.root(tails[e]) != uf.root(G.to(e))) keys[n++] = keys[i];
+                    }
+                    c.kept = n - c.lo;
+                    return null;
+                }
+            });
+        }
+        runAll(pool, tasks);
+
+        int end = lo;
+        for (Chunk c : chunks) {
+            System.arraycopy(keys, c.lo, keys, end, c.kept);
+            end += c.kept;
+        }
+        return end;
+    }
+
+    // one piece of a range, and where its keys go
+    private static class Chunk {
+        final int lo, hi;
+        int kept;                        // keys that stay in front
+        int light, heavy;                // where split() puts them in scratch[]
+
+        Chunk(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+    }
+
+    // lo..hi-1 cut into one chunk per thread, or a single chunk when small
+    private static Chunk[] chunks(ExecutorService pool, int threads, int lo, int hi) {
+        int parts = pool == null || hi - lo < PARALLEL ? 1 : threads;
+        Chunk[] chunks = new Chunk[parts];
+        for (int t = 0; t < parts; t++)
+            chunks[t] = new Chunk(lo + (int) ((long) (hi - lo) * t / parts), lo + (int) ((long) (hi - lo) * (t + 1) / parts));
+        return chunks;
+    }
+
+    // run the tasks on the pool, or right here when there is only one
+    private static void runAll(ExecutorService pool, List<Callable<Void>> tasks) {
+        try {
+            if (tasks.size() == 1) {
+                tasks.get(0).call();
+                return;
+            }
+            for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted during spanning forest", ie);
+        }
+        catch (ExecutionException ee) {
+            if (ee.getCause() instanceof RuntimeException) throw (RuntimeException) ee.getCause();
+            throw new RuntimeException(ee.getCause());
+        }
+        catch (Exception e) {
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    // return iterator of edges in MST
+    public Iterable<DirectedEdge> edges() {
+        return mst;
+    }
+
+    // return weight of MST
+    public double weight() {
+        return weight;
+    }
+
+
+    // check that the MST is a spanning forest; main compares its weight with PrimMST
+    private boolean check(Subgraph H) {
+        UF check = new UF(G.V());
+        for (DirectedEdge e : edges()) {
+            if (check.connected(e.from(), e.to())) {
+                System.err.println("Not a forest");
+                return false;
+            }
+            check.union(e.from(), e.to());
+        }
+        for (int e = 0; e < G.E(); e++) {
+            if (!H.hasVertex(tails[e]) || !H.hasVertex(G.to(e)) || !H.hasEdge(e)) continue;
+            if (!check.connected(tails[e], G.to(e))) {
+                System.err.println("Not a spanning forest");
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    public static void main(String[] args) {
+        Graph G;
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length <= 2 && !args[0].matches("\\d+")) {
+            G = GraphReader.read(args[0]);
+            if (args.length > 1) threads = Integer.parseInt(args[1]);
+        }
+        else {
+            // random graph, every edge in both directions as in the network files
+            int V = Integer.parseInt(args[0]);
+            int E = Integer.parseInt(args[1]);
+            if (args.length > 2) threads = Integer.parseInt(args[2]);
+            Random random = new Random(1501);
+            G = new Graph(V);
+            for (int i = 0; i < E; i++) {
+                int v = random.nextInt(V), w = random.nextInt(V);
+                double weight = 1 + random.nextInt(1000000);
+                G.addEdge(new DirectedEdge(v, w, weight));
+                G.addEdge(new DirectedEdge(w, v, weight));
+            }
+        }
+
+        long start = System.nanoTime();
+        FilterKruskalMST filter = new FilterKruskalMST(G, threads);
+        double filterTime = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        KruskalMST kruskal = new KruskalMST(G);
+        double kruskalTime = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        PrimMST prim = new PrimMST(G);
+        double primTime = (System.nanoTime() - start) / 1e6;
+
+        StdOut.printf("Filter-Kruskal: total weight = %.5f in %.1f ms on %d threads\n", filter.weight(), filterTime, threads);
+        StdOut.printf("Kruskal:        total weight = %.5f in %.1f ms\n", kruskal.weight(), kruskalTime);
+        StdOut.printf("Prim:           total weight = %.5f in %.1f ms\n", prim.weight(), primTime);
+        if (Math.abs(prim.weight() - filter.weight()) > 1E-9 * Math.max(1.0, prim.weight()))
+            throw new RuntimeException("Weights differ: " + filter.weight() + " vs " + prim.weight());
+        if (G.V() > 10) return;
+        for (DirectedEdge e : filter.edges())
+            StdOut.println(e);
+    }
+}
@@ -1,13 +1,54 @@
 // CS 1501 Summer 2016
 // Modified by Samuel Birus
 // Modification of Sedgewick and Wayne weighted, directed graph
+//
+// Edges are kept in compressed sparse row form: the edges leaving each
+// vertex occupy a contiguous run of slots in primitive buffers, so the
+// algorithms can scan them without allocating iterators or edge objects.
+// The buffers are heap arrays, or file sections mapped by GraphFile.
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 public class Graph {
     private int V;
     private int E;
-    private Bag<DirectedEdge>[] adj;
+    private IntBuffer offsets;       // edges leaving v are in slots offsets[v] to offsets[v+1]-1
+    private IntBuffer targets;       // targets[e] = vertex edge e points to
+    private DoubleBuffer weights;    // weights[e] = weight of edge e
     private boolean[] connected;
 
+    // edges added since the slot arrays were last rebuilt, merged in by compact()
+    private int pending;
+    private int[] pendingFrom;
+    private int[] pendingTo;
+    private double[] pendingWeight;
+
+    // open addressing table from the pair v,w to the slot of edge v->w, or -1
+    // when empty; built on the first lookup and dropped when slots move
+    private int[] index;
+
+    // the edges entering v are the slots inSlots[inOffsets[v]] to
+    // inSlots[inOffsets[v+1]-1], leaving from inFrom[] at the same positions;
+    // built on first use, dropped when slots move
+    private int[] inOffsets;
+    private int[] inSlots;
+    private int[] inFrom;
+
+    // number of edges whose weight is not a nonnegative integer, -1 until counted
+    private int nonIntegral = -1;
+
+    // the largest weight of any edge once nonIntegral is counted; when the
+    // edge holding it gets lighter, it is found again on the next call
+    private double maxWeight;
+    private boolean maxLowered;
+
+    // bumped by every change to edges, weights, vertices or connectivity
+    private long version;
+
     /**
      * Create an empty edge-weighted digraph with V vertices.
      */
@@ -15,10 +56,32 @@ public class Graph {
         if (V < 0) throw new RuntimeException("Number of vertices must be nonnegative");
         this.V = V;
         this.E = 0;
-        adj = (Bag<DirectedEdge>[]) new Bag[V];
+        offsets = IntBuffer.allocate(V + 1);
+        targets = IntBuffer.allocate(0);
+        weights = DoubleBuffer.allocate(0);
+        connected = new boolean[V];
+        for (int v = 0; v < V; v++){
+            connected[v] = true;
+        }
+    }
+
+    /**
+     * Create an edge-weighted digraph over existing slot arrays, such as the
+     * sections of a mapped GraphFile. offsets must hold at least V+1 entries
+     * and targets and weights E entries each. The buffers are used in place and
+     * may be read-only.
+     */
+    public Graph(int V, IntBuffer offsets, IntBuffer targets, DoubleBuffer weights) {
+        if (V < 0) throw new RuntimeException("Number of vertices must be nonnegative");
+        if (offsets.limit() < V + 1 || targets.limit() != weights.limit())
+            throw new RuntimeException("Slot arrays do not match vertex count");
+        this.V = V;
+        this.E = targets.limit();
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
         connected = new boolean[V];
         for (int v = 0; v < V; v++){
-            adj[v] = new Bag<DirectedEdge>();
             connected[v] = true;
         }
     }
@@ -29,6 +92,7 @@ public class Graph {
     public Graph(int V, int E) {
         this(V);
         if (E < 0) throw new RuntimeException("Number of edges must be nonnegative");
+        reserve(E);
         for (int i = 0; i < E; i++) {
             int v = (int) (Math.random() * V);
             int w = (int) (Math.random() * V);
@@ -44,6 +108,7 @@ public class Graph {
     public Graph(In in) {
         this(in.readInt());
         int E = in.readInt();
+        reserve(2 * E);
         for (int i = 0; i < E; i++) {
             int v = in.readInt();
             int w = in.readInt();
@@ -73,44 +138,185 @@ public class Graph {
      * Add the edge e to this digraph.
      */
     public void addEdge(DirectedEdge e) {
-        int v = e.from();
-        adj[v].add(e);
-        E++;
+        append(e.from(), e.to(), e.weight());
     }
 
     
     //allows the addition of new edges to the graph
     public void addNewEdge(DirectedEdge e){
-        E++;
-        int v = e.from();
-        adj[v].add(e);
-        connected[v] = true;
+        append(e.from(), e.to(), e.weight());
+        connected[e.from()] = true;
     }
 
-    //increase the adj bag to make room for new item
+    //increase the vertex count to make room for a new vertex
     public void increase(){
-        //increase the total vertices
-        V++;
-        //increase adj
-        Bag<DirectedEdge>[] temp = (Bag<DirectedEdge>[]) new Bag[V];
-        for (int v = 0; v < V; v++){
-            temp[v] = new Bag<DirectedEdge>();
+        addVertices(1);
+    }
+
+   /**
+     * Add k new vertices with no edges, numbered V() to V()+k-1. They stay
+     * down until an edge leaving them is added with addNewEdge(). The
+     * per-vertex arrays grow by doubling, so adding n vertices one at a time
+     * takes time proportional to n rather than n times V. Their edges are a
+     * different matter: the first read after addNewEdge() runs compact(),
+     * which is linear in V+E and drops the slot and reverse indexes, so
+     * add every edge of a batch before reading the graph again.
+     */
+    public void addVertices(int k) {
+        if (k < 0) throw new RuntimeException("Number of vertices must be nonnegative");
+        int end = offsets.get(V);
+        if (V + k + 1 > offsets.capacity() || offsets.isReadOnly()) {
+            // mapped offsets can't grow in place either, so they move to the heap here
+            int[] temp = new int[Math.max(V + k + 1, 2 * (V + 1))];
+            for (int v = 0; v <= V; v++)
+                temp[v] = offsets.get(v);
+            offsets = IntBuffer.wrap(temp);
+        }
+        for (int v = V + 1; v <= V + k; v++)
+            offsets.put(v, end);
+
+        if (V + k > connected.length)
+            connected = Arrays.copyOf(connected, Math.max(V + k, 2 * connected.length));
+        for (int v = V; v < V + k; v++)
+            connected[v] = false;
+        V += k;
+        version++;
+        inOffsets = null;
+        inSlots = null;
+        inFrom = null;
+    }
+
+    // make room for n more pending edges
+    private void reserve(int n) {
+        if (pendingFrom == null) {
+            pendingFrom = new int[Math.max(n, 4)];
+            pendingTo = new int[pendingFrom.length];
+            pendingWeight = new double[pendingFrom.length];
         }
+        else if (pending + n > pendingFrom.length) {
+            int capacity = Math.max(pending + n, 2 * pendingFrom.length);
+            pendingFrom = Arrays.copyOf(pendingFrom, capacity);
+            pendingTo = Arrays.copyOf(pendingTo, capacity);
+            pendingWeight = Arrays.copyOf(pendingWeight, capacity);
+        }
+    }
 
-        for(int i = 0; i < (V-1); i++){
-            for(DirectedEdge obj : adj[i]){
-                temp[i].add(obj);
+    // queue edge v->w until the next compact()
+    private void append(int v, int w, double weight) {
+        if (v < 0 || v >= V || w < 0 || w >= V) throw new RuntimeException("Edge " + v + "->" + w + " out of range");
+        reserve(1);
+        pendingFrom[pending] = v;
+        pendingTo[pending] = w;
+        pendingWeight[pending] = weight;
+        pending++;
+        E++;
+        version++;
+        if (nonIntegral != -1) {
+            if (!isIntegral(weight)) nonIntegral++;
+            maxWeight = Math.max(maxWeight, weight);
+        }
+    }
+
+   /**
+     * Merge the pending edges into the slot arrays. Edges added later come
+     * first within their vertex, the same order a Bag would give.
+     * Runs automatically on the first read after a change; call it directly
+     * before sharing the graph between threads. Takes time linear in V+E,
+     * however few edges are pending: every slot after the first new edge
+     * moves, and slot(), inBegin() and the engines all index by slot.
+     */
+    public void compact() {
+        if (pending == 0) return;
+        int[] newOffsets = new int[Math.max(V + 1, offsets.capacity())];    // keep room for addVertices()
+        for (int v = 0; v < V; v++)
+            newOffsets[v+1] = offsets.get(v+1) - offsets.get(v);
+        for (int i = 0; i < pending; i++)
+            newOffsets[pendingFrom[i] + 1]++;
+        for (int v = 0; v < V; v++)
+            newOffsets[v+1] += newOffsets[v];
+
+        int[] next = Arrays.copyOf(newOffsets, V);
+        int[] newTargets = new int[E];
+        double[] newWeights = new double[E];
+        for (int i = pending - 1; i >= 0; i--) {
+            int p = next[pendingFrom[i]]++;
+            newTargets[p] = pendingTo[i];
+            newWeights[p] = pendingWeight[i];
+        }
+        for (int v = 0; v < V; v++) {
+            for (int e = offsets.get(v); e < offsets.get(v+1); e++) {
+                int p = next[v]++;
+                newTargets[p] = targets.get(e);
+                newWeights[p] = weights.get(e);
             }
-        }     
+        }
+
+        offsets = IntBuffer.wrap(newOffsets);
+        targets = IntBuffer.wrap(newTargets);
+        weights = DoubleBuffer.wrap(newWeights);
+        pending = 0;
+        pendingFrom = null;
+        pendingTo = null;
+        pendingWeight = null;
+        index = null;
+        inOffsets = null;
+        inSlots = null;
+        inFrom = null;
+    }
+
+
+   /**
+     * Return the first slot of the edges leaving vertex v. The edges leaving v
+     * are the slots <tt>begin(v)</tt> up to but not including <tt>end(v)</tt>:
+     * <tt>for (int e = G.begin(v); e < G.end(v); e++)</tt>.
+     */
+    public int begin(int v) {
+        if (pending != 0) compact();
+        return offsets.get(v);
+    }
+
+   /**
+     * Return one past the last slot of the edges leaving vertex v.
+     */
+    public int end(int v) {
+        if (pending != 0) compact();
+        return offsets.get(v+1);
+    }
+
+   /**
+     * Return the vertex that the edge in slot e points to.
+     */
+    public int to(int e) {
+        return targets.get(e);
+    }
+
+   /**
+     * Return the weight of the edge in slot e.
+     */
+    public double weight(int e) {
+        return weights.get(e);
+    }
 
-        adj = temp;
+   /**
+     * Return the vertex that the edge in slot e leaves from.
+     * Takes time logarithmic in V.
+     */
+    public int from(int e) {
+        if (pending != 0) compact();
+        int lo = 0, hi = V - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets.get(mid) <= e) lo = mid;
+            else                   hi = mid - 1;
+        }
+        return lo;
+    }
 
-        //increase connected
-        boolean[] tempBool = new boolean[V];
-        for(int k = 0; k < (V-1); k++){
-            tempBool[k] = connected[k];
-        } 
-        connected = tempBool;
+   /**
+     * Return the edge in slot e as a DirectedEdge.
+     */
+    public DirectedEdge edge(int e) {
+        return new DirectedEdge(from(e), targets.get(e), weights.get(e));
     }
 
 
@@ -119,44 +325,282 @@ public class Graph {
      * To iterate over the edges leaving vertex v, use foreach notation:
      * <tt>for (DirectedEdge e : graph.adj(v))</tt>.
      */
-    public Iterable<DirectedEdge> adj(int v) {
-        return adj[v];
+    public Iterable<DirectedEdge> adj(final int v) {
+        return new Iterable<DirectedEdge>() {
+            public Iterator<DirectedEdge> iterator() { return new SlotIterator(v, begin(v), end(v)); }
+        };
     }
 
    /**
      * Return all edges in this graph as an Iterable.
      * To iterate over the edges, use foreach notation:
      * <tt>for (DirectedEdge e : graph.edges())</tt>.
+     * The edges are read from the slot arrays as the iteration goes, nothing
+     * is copied up front.
      */
     public Iterable<DirectedEdge> edges() {
-        Bag<DirectedEdge> list = new Bag<DirectedEdge>();
+        return new Iterable<DirectedEdge>() {
+            public Iterator<DirectedEdge> iterator() { return new EdgeIterator(); }
+        };
+    }
+
+   /**
+     * Receives the edges of a graph one at a time, see forEachEdge().
+     */
+    public interface EdgeVisitor {
+        public void visit(int v, int w, double weight);
+    }
+
+   /**
+     * Call visitor.visit(v, w, weight) for every edge v->w, vertex by vertex.
+     * Unlike edges() this creates no objects at all.
+     */
+    public void forEachEdge(EdgeVisitor visitor) {
         for (int v = 0; v < V; v++) {
-            for (DirectedEdge e : adj(v)) {
-                list.add(e);
+            for (int e = begin(v), end = end(v); e < end; e++) {
+                visitor.visit(v, targets.get(e), weights.get(e));
             }
         }
-        return list;
     } 
 
    /**
      * Return number of edges leaving v.
      */
     public int outdegree(int v) {
-        return adj[v].size();
+        return end(v) - begin(v);
     }
 
     
-    //change an edge
+    //change the weight of the edge v-w in both directions, in constant time
     public void changeEdge(int v, int w, double weight){
-        for(int i = 0; i < V; i++){
-            for(DirectedEdge e : adj(i)){
-                if(e.from() == v && e.to() == w){
-                    e.changeWeight(weight);
-                    System.out.println("Weight of edge " + e + " changed to " + weight);
-                    break;
-                }
+        int e = slot(v, w);
+        int r = slot(w, v);
+        if(e != -1){
+            setWeight(e, weight);
+            System.out.println("Weight of edge " + new DirectedEdge(v, w, weight) + " changed to " + weight);
+        }
+        if(r != -1 && r != e){
+            setWeight(r, weight);
+            System.out.println("Weight of edge " + new DirectedEdge(w, v, weight) + " changed to " + weight);
+        }
+    }
+
+    // overwrite the weight in slot e
+    private void setWeight(int e, double weight) {
+        if (weights.isReadOnly()) {
+            // weights mapped from a GraphFile, copy them before the first write
+            double[] copy = new double[E];
+            weights.get(copy);
+            weights.rewind();
+            weights = DoubleBuffer.wrap(copy);
+        }
+        if (nonIntegral != -1) {
+            if (!isIntegral(weights.get(e))) nonIntegral--;
+            if (!isIntegral(weight))         nonIntegral++;
+            if (weights.get(e) == maxWeight && weight < maxWeight) maxLowered = true;
+            maxWeight = Math.max(maxWeight, weight);
+        }
+        weights.put(e, weight);
+        version++;
+    }
+
+   /**
+     * Number of changes made to the graph so far. Anything derived from the
+     * graph can remember the version it was built from and compare later.
+     */
+    public long version() {
+        return version;
+    }
+
+   /**
+     * Are all edge weights nonnegative integers, small enough that a path
+     * through every vertex still adds up below 2^53? Then distances can be
+     * computed in exact integer arithmetic and read back as doubles without
+     * rounding, see RadixHeapSP. The first call scans the edges; after that
+     * the answer is kept up to date.
+     */
+    public boolean hasIntegerWeights() {
+        countWeights();
+        return nonIntegral == 0 && maxWeight <= ((1L << 53) - 1) / Math.max(V - 1, 1);
+    }
+
+   /**
+     * Return the largest edge weight, 0 if there are no edges. The first
+     * call scans the edges, like hasIntegerWeights(), and so does the first
+     * call after changeEdge() lowers the heaviest edge.
+     */
+    public double maxWeight() {
+        countWeights();
+        return maxWeight;
+    }
+
+    // count the weights that are not nonnegative integers, and find the largest
+    private void countWeights() {
+        if (nonIntegral != -1 && !maxLowered) return;
+        compact();
+        int count = 0;
+        double max = 0;
+        for (int e = 0; e < E; e++) {
+            double weight = weights.get(e);
+            if (!isIntegral(weight)) count++;
+            max = Math.max(max, weight);
+        }
+        maxWeight = max;
+        maxLowered = false;
+        nonIntegral = count;
+    }
+
+    // is weight a nonnegative integer?
+    private static boolean isIntegral(double weight) {
+        return weight >= 0 && weight == Math.floor(weight) && !Double.isInfinite(weight);
+    }
+
+   /**
+     * Return the first position of the edges entering vertex v. The slots of
+     * those edges are <tt>inSlot(i)</tt> for i from <tt>inBegin(v)</tt> up to
+     * but not including <tt>inEnd(v)</tt>. The first call builds the reverse
+     * index in time proportional to E.
+     */
+    public int inBegin(int v) {
+        if (pending != 0) compact();
+        if (inSlots == null) buildReverse();
+        return inOffsets[v];
+    }
+
+   /**
+     * Return one past the last position of the edges entering vertex v.
+     */
+    public int inEnd(int v) {
+        if (pending != 0) compact();
+        if (inSlots == null) buildReverse();
+        return inOffsets[v+1];
+    }
+
+   /**
+     * Return the slot of the edge at position i of the reverse index.
+     */
+    public int inSlot(int i) {
+        return inSlots[i];
+    }
+
+   /**
+     * Return the vertex that the edge at position i of the reverse index
+     * leaves from, without the search that from() needs.
+     */
+    public int inFrom(int i) {
+        return inFrom[i];
+    }
+
+    // group the slots by the vertex they point to
+    private void buildReverse() {
+        int[] counts = new int[V + 1];
+        for (int e = 0; e < E; e++)
+            counts[targets.get(e) + 1]++;
+        for (int v = 0; v < V; v++)
+            counts[v+1] += counts[v];
+        int[] next = Arrays.copyOf(counts, V);
+        int[] slots = new int[E];
+        int[] sources = new int[E];
+        for (int v = 0; v < V; v++) {
+            for (int e = offsets.get(v); e < offsets.get(v+1); e++) {
+                int p = next[targets.get(e)]++;
+                slots[p] = e;
+                sources[p] = v;
+            }
+        }
+        inOffsets = counts;
+        inFrom = sources;
+        inSlots = slots;
+    }
+
+   /**
+     * Return the slot of the edge v->w, or -1 if there is none. With parallel
+     * edges this is the first one in adj(v). Takes constant expected time.
+     */
+    public int slot(int v, int w) {
+        if (v < 0 || v >= V || w < 0 || w >= V) return -1;
+        if (pending != 0) compact();
+        if (index == null) buildIndex();
+        int mask = index.length - 1;
+        for (int i = hash(v, w) & mask; index[i] != -1; i = (i + 1) & mask) {
+            int e = index[i];
+            if (targets.get(e) == w && offsets.get(v) <= e && e < offsets.get(v+1)) return e;
+        }
+        return -1;
+    }
+
+    // the table only holds slots: a slot's own row and target identify its pair
+    private void buildIndex() {
+        int capacity = 2;
+        while (capacity < 2L * E) capacity *= 2;
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+        int mask = capacity - 1;
+        for (int v = 0; v < V; v++) {
+            int lo = offsets.get(v), hi = offsets.get(v+1);
+            for (int e = lo; e < hi; e++) {
+                int w = targets.get(e);
+                int i = hash(v, w) & mask;
+                while (table[i] != -1 && !(lo <= table[i] && table[i] < e && targets.get(table[i]) == w))
+                    i = (i + 1) & mask;
+                if (table[i] == -1) table[i] = e;
             }
         }
+        index = table;
+    }
+
+    // spread the 64 bit pair v,w over an int
+    private static int hash(int v, int w) {
+        long h = ((long) v << 32) | (w & 0xffffffffL);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+
+    // an iterator over the slots lo to hi-1, all leaving vertex v,
+    // doesn't implement remove() since it's optional
+    private class SlotIterator implements Iterator<DirectedEdge> {
+        private final int v;
+        private final int hi;
+        private int current;
+
+        public SlotIterator(int v, int lo, int hi) {
+            this.v = v;
+            this.current = lo;
+            this.hi = hi;
+        }
+
+        public boolean hasNext()  { return current < hi;                        }
+        public void remove()      { throw new UnsupportedOperationException();  }
+
+        public DirectedEdge next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int e = current++;
+            return new DirectedEdge(v, targets.get(e), weights.get(e));
+        }
+    }
+
+
+    // an iterator over every slot, doesn't implement remove() since it's optional
+    private class EdgeIterator implements Iterator<DirectedEdge> {
+        private int v = 0;        // vertex that slot current leaves from
+        private int current = 0;
+
+        public EdgeIterator() {
+            if (pending != 0) compact();
+        }
+
+        public boolean hasNext()  { return current < offsets.get(V);            }
+        public void remove()      { throw new UnsupportedOperationException();  }
+
+        public DirectedEdge next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            while (offsets.get(v+1) <= current) v++;
+            int e = current++;
+            return new DirectedEdge(v, targets.get(e), weights.get(e));
+        }
     }
 
 
@@ -169,9 +613,9 @@ public class Graph {
         for (int v = 0; v < V; v++) {
             if(connected[v] == true){
                 s.append(v + ": ");
-                for (DirectedEdge e : adj[v]) {
-                    if(connected[e.from()] == true && connected[e.to()] == true){
-                        s.append(e + "  ");
+                for (int e = begin(v); e < end(v); e++) {
+                    if(connected[targets.get(e)] == true){
+                        s.append(new DirectedEdge(v, targets.get(e), weights.get(e)) + "  ");
                     }
                 }
                 s.append(NEWLINE);
@@ -185,9 +629,9 @@ public class Graph {
         StringBuilder s = new StringBuilder();
         if(connected[v] == true){
             s.append(v + ": ");
-            for (DirectedEdge e : adj[v]) {
-                if(connected[e.from()] == true && connected[e.to()] == true){
-                    s.append(e + "  ");
+            for (int e = begin(v); e < end(v); e++) {
+                if(connected[targets.get(e)] == true){
+                    s.append(new DirectedEdge(v, targets.get(e), weights.get(e)) + "  ");
                 }
             }
             //s.append(NEWLINE);
@@ -200,11 +644,13 @@ public class Graph {
     //change if the node is connected or not
     public void downConnect(int v){
         connected[v] = false;
+        version++;
     }
 
     //change if the node is connected or not
     public void upConnect(int v){
         connected[v] = true;
+        version++;
     }
 
     //check connection of the node
@@ -0,0 +1,164 @@
+/*************************************************************************
+ *  Compilation:  javac GraphFile.java
+ *  Execution:    java GraphFile graph1.txt graph1.bin
+ *  Dependencies: Graph.java In.java
+ *
+ *  Binary graph files that are memory-mapped instead of parsed.
+ *
+ *  % java GraphFile graph1.txt graph1.bin
+ *  Wrote 6 vertices and 16 edges to graph1.bin
+ *
+ *  Layout, little-endian:
+ *    header    magic, version, V, E                  4 ints
+ *    offsets   edges leaving v are slots
+ *              offsets[v] to offsets[v+1]-1          V+1 ints
+ *    targets   targets[e] = head of edge e           E ints
+ *    padding   to an 8 byte boundary                 0 or 4 bytes
+ *    weights   weights[e] = weight of edge e         E doubles
+ *
+ *  E counts directed edges, so an input line of graph1.txt is stored
+ *  twice, once in each direction, exactly as Graph(In) builds it.
+ *
+ *************************************************************************/
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+public class GraphFile {
+    private static final int MAGIC = 0x50524D47;    // "PRMG"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;           // bytes in the header
+    private static final int CHUNK = 1 << 16;       // bytes written per call
+
+    // this class should not be instantiated
+    private GraphFile() { }
+
+   /**
+     * Write G to filename in the binary layout above.
+     */
+    public static void write(Graph G, String filename) {
+        G.compact();
+        int V = G.V(), E = G.E();
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            ByteBuffer buf = ByteBuffer.allocate(CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+
+            buf.putInt(MAGIC).putInt(VERSION).putInt(V).putInt(E);
+            for (int v = 0; v <= V; v++) {
+                buf = drain(channel, buf, 4);
+                buf.putInt(v < V ? G.begin(v) : E);
+            }
+            for (int e = 0; e < E; e++) {
+                buf = drain(channel, buf, 4);
+                buf.putInt(G.to(e));
+            }
+            buf = drain(channel, buf, 4);
+            if (padding(V, E) != 0) buf.putInt(0);
+            for (int e = 0; e < E; e++) {
+                buf = drain(channel, buf, 8);
+                buf.putDouble(G.weight(e));
+            }
+            drain(channel, buf, CHUNK);
+        }
+        catch (IOException ioe) {
+            throw new RuntimeException("Could not write " + filename, ioe);
+        }
+    }
+
+    // write out buf if it has fewer than n bytes free
+    private static ByteBuffer drain(FileChannel channel, ByteBuffer buf, int n) throws IOException {
+        if (buf.remaining() >= n) return buf;
+        buf.flip();
+        while (buf.hasRemaining()) channel.write(buf);
+        buf.clear();
+        return buf;
+    }
+
+    // bytes of padding between the targets and weights sections
+    private static int padding(int V, int E) {
+        long end = HEADER + 4L * (V + 1) + 4L * E;
+        return (int) (end % 8);
+    }
+
+   /**
+     * Map filename and return a graph that reads its edges straight from
+     * the mapped file. Nothing is parsed or copied onto the heap, and every
+     * process that loads the same file shares its page cache. The mapping is
+     * read-only; the first changeEdge() moves the weights onto the heap.
+     */
+    public static Graph load(String filename) {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+            FileChannel channel = file.getChannel();
+            if (channel.size() < HEADER) throw new RuntimeException(filename + " is not a graph file");
+            ByteBuffer header = map(channel, 0, HEADER);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+                throw new RuntimeException(filename + " is not a graph file");
+            int V = header.getInt(8);
+            int E = header.getInt(12);
+            if (V < 0 || E < 0) throw new RuntimeException(filename + " is not a graph file");
+
+            long offsetsAt = HEADER;
+            long targetsAt = offsetsAt + 4L * (V + 1);
+            long weightsAt = targetsAt + 4L * E + padding(V, E);
+            if (channel.size() < weightsAt + 8L * E)
+                throw new RuntimeException(filename + " is truncated");
+
+            // each section gets its own mapping, since a mapping is limited to 2GB
+            IntBuffer offsets = map(channel, offsetsAt, 4L * (V + 1)).asIntBuffer();
+            IntBuffer targets = map(channel, targetsAt, 4L * E).asIntBuffer();
+            DoubleBuffer weights = map(channel, weightsAt, 8L * E).asDoubleBuffer();
+            validate(filename, V, E, offsets, targets);
+            return new Graph(V, offsets, targets, weights);
+        }
+        catch (IOException ioe) {
+            throw new RuntimeException("Could not read " + filename, ioe);
+        }
+    }
+
+    // fail now, not deep inside an engine, if the sections don't describe a graph;
+    // reads every offset and target once
+    private static void validate(String filename, int V, int E, IntBuffer offsets, IntBuffer targets) {
+        if (offsets.get(0) != 0 || offsets.get(V) != E)
+            throw new RuntimeException(filename + ": offsets do not span the " + E + " edges");
+        for (int v = 0; v < V; v++)
+            if (offsets.get(v) > offsets.get(v+1))
+                throw new RuntimeException(filename + ": offsets of vertex " + v + " decrease");
+        for (int e = 0; e < E; e++) {
+            int w = targets.get(e);
+            if (w < 0 || w >= V) throw new RuntimeException(filename + ": edge " + e + " points to " + w);
+        }
+    }
+
+    // map size bytes at position
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) throw new RuntimeException("Graph section too large to map");
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+   /**
+     * Is filename a binary graph file, judging by its name?
+     */
+    public static boolean isGraphFile(String filename) {
+        return filename.endsWith(".bin");
+    }
+
+
+   /**
+     * Convert a text graph such as graph1.txt to the binary layout.
+     */
+    public static void main(String[] args) {
+        Graph G = new Graph(new In(args[0]));
+        write(G, args[1]);
+        StdOut.println("Wrote " + G.V() + " vertices and " + G.E() + " edges to " + args[1]);
+
+        // read it back and make sure nothing was lost
+        Graph H = load(args[1]);
+        if (!G.toString().equals(H.toString())) throw new RuntimeException("Round trip mismatch");
+    }
+}
@@ -0,0 +1,488 @@
+/*************************************************************************
+ *  Compilation:  javac GraphReader.java
+ *  Execution:    java GraphReader graph1.txt
+ *  Dependencies: Graph.java
+ *
+ *  Fast loader for text graphs in the graph1.txt format:
+ *
+ *    V
+ *    E
+ *    v w weight      (E lines, each added in both directions)
+ *
+ *  Reads raw bytes through its own buffer and parses integers digit by
+ *  digit, so no regular expressions run and no String is created per
+ *  token, unlike In.readInt() which goes through Scanner. The edges are
+ *  written straight into the slot arrays of the Graph.
+ *
+ *  Large files can be loaded on several cores with readParallel(), which
+ *  splits the edge lines into byte ranges and parses them concurrently.
+ *
+ *  % java GraphReader graph1.txt
+ *  6 vertices, 16 edges
+ *
+ *************************************************************************/
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class GraphReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long PARALLEL_THRESHOLD = 1 << 22;   // smaller files are read sequentially
+    private static final long MAX_CHUNK = 1 << 30;            // bytes mapped per chunk
+
+    private final InputStream stream;    // null when reading from bytes
+    private final ByteBuffer bytes;      // null when reading from stream
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int length;      // number of valid bytes in buffer
+    private int position;    // next byte to read from buffer
+    private long consumed;   // bytes moved into buffer so far
+
+   /**
+     * Create a reader of integers from the given stream.
+     */
+    public GraphReader(InputStream stream) {
+        this.stream = stream;
+        this.bytes = null;
+    }
+
+   /**
+     * Create a reader of integers from the remaining bytes of the given buffer.
+     */
+    public GraphReader(ByteBuffer bytes) {
+        this.stream = null;
+        this.bytes = bytes;
+    }
+
+    // return the next byte, or -1 at end of input
+    private int read() {
+        if (position == length) {
+            if (stream == null) {
+                length = Math.min(BUFFER_SIZE, bytes.remaining());
+                bytes.get(buffer, 0, length);
+            }
+            else {
+                try {
+                    length = stream.read(buffer, 0, BUFFER_SIZE);
+                }
+                catch (IOException ioe) {
+                    throw new RuntimeException("Could not read input", ioe);
+                }
+            }
+            position = 0;
+            if (length > 0) consumed += length;
+            if (length <= 0) {
+                length = 0;
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xff;
+    }
+
+   /**
+     * Is there nothing but whitespace left?
+     */
+    public boolean isEmpty() {
+        while (true) {
+            if (position == length) {
+                if (read() == -1) return true;
+                position--;
+            }
+            byte c = buffer[position];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return false;
+            position++;
+        }
+    }
+
+    // number of bytes of input read so far
+    private long offset() {
+        return consumed - (length - position);
+    }
+
+   /**
+     * Read the next whitespace separated integer.
+     */
+    public int readInt() {
+        int c = read();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') c = read();
+        if (c == -1) throw new RuntimeException("Unexpected end of input");
+
+        boolean negative = false;
+        if (c == '-') {
+            negative = true;
+            c = read();
+        }
+        if (c < '0' || c > '9') throw new RuntimeException("Expected an integer, found '" + (char) c + "'");
+
+        long n = 0;
+        while (c >= '0' && c <= '9') {
+            n = 10 * n + (c - '0');
+            if (n > Integer.MAX_VALUE + 1L) throw new RuntimeException("Integer too large");
+            c = read();
+        }
+        if (c != -1 && c != ' ' && c != '\n' && c != '\r' && c != '\t')
+            throw new RuntimeException("Expected an integer, found '" + (char) c + "'");
+        if (negative) n = -n;
+        if (n > Integer.MAX_VALUE) throw new RuntimeException("Integer too large");
+        return (int) n;
+    }
+
+   /**
+     * Read a graph in the graph1.txt format from filename. Builds the same
+     * graph, with the same edge order, as <tt>new Graph(new In(filename))</tt>.
+     */
+    public static Graph read(String filename) {
+        try (InputStream stream = new FileInputStream(filename)) {
+            return read(new GraphReader(stream));
+        }
+        catch (IOException ioe) {
+            throw new RuntimeException("Could not open " + filename, ioe);
+        }
+    }
+
+   /**
+     * Read a graph in the graph1.txt format from in.
+     */
+    public static Graph read(GraphReader in) {
+        int V = in.readInt();
+        int E = in.readInt();
+        if (V < 0) throw new RuntimeException("Number of vertices must be nonnegative");
+        if (E < 0) throw new RuntimeException("Number of edges must be nonnegative");
+        int[] from = new int[E];
+        int[] to = new int[E];
+        double[] weight = new double[E];
+        for (int i = 0; i < E; i++) {
+            from[i] = in.readInt();
+            to[i] = in.readInt();
+            weight[i] = in.readInt();
+            if (from[i] < 0 || from[i] >= V || to[i] < 0 || to[i] >= V)
+                throw new RuntimeException("Edge " + from[i] + "-" + to[i] + " out of range");
+        }
+        return build(V, E, from, to, weight);
+    }
+
+   /**
+     * Read a graph in the graph1.txt format from filename using up to the
+     * given number of threads. The edge lines are split into byte ranges at
+     * line boundaries and parsed concurrently; each range counts the degrees
+     * of its own edges, and once the offsets are known every range scatters
+     * its edges into its own share of the slots. A range keeps counts only
+     * for the vertices its edges touch, so the counts take space in
+     * proportion to E, not to V for every range. The result is identical to
+     * read(filename), which is used for small files.
+     */
+    public static Graph readParallel(String filename, int threads) {
+        if (threads < 1) throw new RuntimeException("Need at least one thread");
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (threads == 1 || size < PARALLEL_THRESHOLD) return read(filename);
+
+            // header: V and E
+            GraphReader header = new GraphReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, BUFFER_SIZE)));
+            final int V = header.readInt();
+            int E = header.readInt();
+            if (V < 0) throw new RuntimeException("Number of vertices must be nonnegative");
+            if (E < 0) throw new RuntimeException("Number of edges must be nonnegative");
+            if (2L * E > Integer.MAX_VALUE) throw new RuntimeException("Too many edges");
+            long start = header.offset();
+
+            // split the edge lines into ranges that start at line boundaries
+            int n = (int) Math.max(threads, (size - start + MAX_CHUNK - 1) / MAX_CHUNK);
+            long[] bounds = new long[n + 1];
+            bounds[0] = start;
+            bounds[n] = size;
+            for (int c = 1; c < n; c++)
+                bounds[c] = lineStart(channel, Math.max(bounds[c-1], start + (size - start) * c / n), size);
+
+            final Chunk[] chunks = new Chunk[n];
+            for (int c = 0; c < n; c++) {
+                ByteBuffer range = channel.map(FileChannel.MapMode.READ_ONLY, bounds[c], bounds[c+1] - bounds[c]);
+                chunks[c] = new Chunk(range, V);
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                // parse every range and count its degrees
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+                for (final Chunk chunk : chunks)
+                    tasks.add(new Callable<Void>() {
+                        public Void call() { chunk.parse(); return null; }
+                    });
+                runAll(pool, tasks);
+
+                long total = 0;
+                for (Chunk chunk : chunks) total += chunk.size;
+                if (total != E) throw new RuntimeException("Expected " + E + " edges, found " + total);
+
+                // degrees, then offsets
+                final int[] offsets = new int[V + 1];
+                tasks.clear();
+                for (int t = 0; t < threads; t++) {
+                    final int lo = (int) ((long) V * t / threads), hi = (int) ((long) V * (t + 1) / threads);
+                    tasks.add(new Callable<Void>() {
+                        public Void call() {
+                            for (Chunk chunk : chunks)
+                                for (int i = chunk.first(lo); i < chunk.distinct && chunk.vertex(i) < hi; i++)
+                                    offsets[chunk.vertex(i) + 1] += chunk.count[i];
+                            return null;
+                        }
+                    });
+                }
+                runAll(pool, tasks);
+                for (int v = 0; v < V; v++)
+                    offsets[v+1] += offsets[v];
+
+                // turn each range's degrees into the first slot it fills for each
+                // vertex; later ranges go first, since later edges come first
+                final int[] next = Arrays.copyOf(offsets, V);    // next[v] = first slot of v not yet handed out
+                tasks.clear();
+                for (int t = 0; t < threads; t++) {
+                    final int lo = (int) ((long) V * t / threads), hi = (int) ((long) V * (t + 1) / threads);
+                    tasks.add(new Callable<Void>() {
+                        public Void call() {
+                            for (int c = chunks.length - 1; c >= 0; c--) {
+                                Chunk chunk = chunks[c];
+                                for (int i = chunk.first(lo); i < chunk.distinct && chunk.vertex(i) < hi; i++) {
+                                    int v = chunk.vertex(i);
+                                    int d = chunk.count[i];
+                                    chunk.count[i] = next[v];
+                                    next[v] += d;
+                                }
+                            }
+                            return null;
+                        }
+                    });
+                }
+                runAll(pool, tasks);
+
+                // scatter every range into its own slots
+                final int[] targets = new int[2 * E];
+                final double[] weights = new double[2 * E];
+                tasks.clear();
+                for (final Chunk chunk : chunks)
+                    tasks.add(new Callable<Void>() {
+                        public Void call() { chunk.scatter(targets, weights); return null; }
+                    });
+                runAll(pool, tasks);
+
+                return new Graph(V, IntBuffer.wrap(offsets), IntBuffer.wrap(targets), DoubleBuffer.wrap(weights));
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+        catch (IOException ioe) {
+            throw new RuntimeException("Could not read " + filename, ioe);
+        }
+    }
+
+    // return the first position at or after p that starts a line
+    private static long lineStart(FileChannel channel, long p, long size) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        if (p == 0) return 0;
+        p--;
+        while (p < size) {
+            one.clear();
+            channel.read(one, p++);
+            if (one.get(0) == '\n') return p;
+        }
+        return size;
+    }
+
+    // run the tasks on pool and wait for all of them
+    private static void runAll(ExecutorService pool, List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading graph", ie);
+        }
+        catch (ExecutionException ee) {
+            if (ee.getCause() instanceof RuntimeException) throw (RuntimeException) ee.getCause();
+            throw new RuntimeException(ee.getCause());
+        }
+    }
+
+    // the edges of one byte range of the input, and how many of them each
+    // vertex gets: over the span of vertices they touch when that is small
+    // next to the number of edges, else only for the vertices they touch,
+    // found by sorting the ends. Either way the counts take space in
+    // proportion to the edges of the range, not to V.
+    private static class Chunk {
+        private final GraphReader in;
+        private final int V;
+        private int size;           // number of edges parsed
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private double[] weight = new double[16];
+        private int low;            // vertex of count[0] when counting over a span
+        private int[] touched;      // the vertices with counts in increasing order, null when counting over a span
+        private long[] ends;        // with touched[]: vertex << 32 | 2i or 2i+1 for both ends of every edge i, sorted
+        private int[] count;        // count[i] = edges this range adds at vertex(i), later the first slot to fill
+        private int distinct;       // number of counts
+
+        public Chunk(ByteBuffer range, int V) {
+            this.in = new GraphReader(range);
+            this.V = V;
+        }
+
+        public void parse() {
+            int min = Integer.MAX_VALUE, max = -1;
+            while (!in.isEmpty()) {
+                if (size == from.length) {
+                    from = Arrays.copyOf(from, 2 * size);
+                    to = Arrays.copyOf(to, 2 * size);
+                    weight = Arrays.copyOf(weight, 2 * size);
+                }
+                int v = in.readInt();
+                int w = in.readInt();
+                if (v < 0 || v >= V || w < 0 || w >= V)
+                    throw new RuntimeException("Edge " + v + "-" + w + " out of range");
+                from[size] = v;
+                to[size] = w;
+                weight[size] = in.readInt();
+                min = Math.min(min, Math.min(v, w));
+                max = Math.max(max, Math.max(v, w));
+                size++;
+            }
+
+            if (size == 0) {
+                count = new int[0];
+                return;
+            }
+            if (max - min < 4L * size) {
+                low = min;
+                distinct = max - min + 1;
+                count = new int[distinct];
+                for (int i = 0; i < size; i++) {
+                    count[from[i] - low]++;
+                    count[to[i] - low]++;
+                }
+                return;
+            }
+
+            // within a vertex the sorted ends stay in input order, which scatter() relies on
+            ends = new long[2 * size];
+            for (int i = 0; i < size; i++) {
+                ends[2*i] = (long) from[i] << 32 | (2*i);
+                ends[2*i + 1] = (long) to[i] << 32 | (2*i + 1);
+            }
+            Arrays.sort(ends);
+            touched = new int[16];
+            count = new int[16];
+            for (int i = 0; i < ends.length; i++) {
+                int v = (int) (ends[i] >>> 32);
+                if (distinct > 0 && touched[distinct - 1] == v) {
+                    count[distinct - 1]++;
+                    continue;
+                }
+                if (distinct == touched.length) {
+                    touched = Arrays.copyOf(touched, 2 * distinct);
+                    count = Arrays.copyOf(count, 2 * distinct);
+                }
+                touched[distinct] = v;
+                count[distinct++] = 1;
+            }
+        }
+
+        // the vertex of count[i]
+        public int vertex(int i) {
+            return touched == null ? low + i : touched[i];
+        }
+
+        // index of the first count for a vertex at or after v
+        public int first(int v) {
+            if (touched == null) return (int) Math.max(0, Math.min(distinct, (long) v - low));
+            int i = Arrays.binarySearch(touched, 0, distinct, v);
+            return i < 0 ? -i - 1 : i;
+        }
+
+        // every vertex takes its ends last to first, as read() adds them
+        public void scatter(int[] targets, double[] weights) {
+            if (touched == null) {
+                for (int i = size - 1; i >= 0; i--) {
+                    int v = from[i], w = to[i];
+                    int p = count[w - low]++;
+                    targets[p] = v;
+                    weights[p] = weight[i];
+                    p = count[v - low]++;
+                    targets[p] = w;
+                    weights[p] = weight[i];
+                }
+            }
+            else {
+                for (int k = 0, j = 0; k < distinct; k++) {
+                    int p = count[k];
+                    int hi = j;
+                    while (hi < ends.length && (int) (ends[hi] >>> 32) == touched[k]) hi++;
+                    for (int x = hi - 1; x >= j; x--, p++) {
+                        int end = (int) ends[x];
+                        int i = end >>> 1;
+                        targets[p] = (end & 1) == 0 ? to[i] : from[i];
+                        weights[p] = weight[i];
+                    }
+                    j = hi;
+                }
+            }
+            from = null;
+            to = null;
+            weight = null;
+            touched = null;
+            ends = null;
+            count = null;
+        }
+    }
+
+    // lay out the E input edges, each in both directions, as the slot arrays of
+    // a Graph; later edges come first within a vertex, matching Graph(In)
+    private static Graph build(int V, int E, int[] from, int[] to, double[] weight) {
+        if (2L * E > Integer.MAX_VALUE) throw new RuntimeException("Too many edges");
+        int[] offsets = new int[V + 1];
+        for (int i = 0; i < E; i++) {
+            offsets[from[i] + 1]++;
+            offsets[to[i] + 1]++;
+        }
+        for (int v = 0; v < V; v++)
+            offsets[v+1] += offsets[v];
+
+        int[] next = new int[V];
+        System.arraycopy(offsets, 0, next, 0, V);
+        int[] targets = new int[2 * E];
+        double[] weights = new double[2 * E];
+        for (int i = E - 1; i >= 0; i--) {
+            int v = from[i], w = to[i];
+            int p = next[w]++;
+            targets[p] = v;
+            weights[p] = weight[i];
+            p = next[v]++;
+            targets[p] = w;
+            weights[p] = weight[i];
+        }
+        return new Graph(V, IntBuffer.wrap(offsets), IntBuffer.wrap(targets), DoubleBuffer.wrap(weights));
+    }
+
+
+   /**
+     * Test client.
+     */
+    public static void main(String[] args) {
+        Graph G = readParallel(args[0], Runtime.getRuntime().availableProcessors());
+        StdOut.println(G.V() + " vertices, " + G.E() + " edges");
+        if (G.V() <= 10) StdOut.println(G);
+    }
+}
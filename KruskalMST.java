@@ -0,0 +1,165 @@
+/*************************************************************************
+ *  Compilation:  javac KruskalMST.java
+ *  Execution:    java KruskalMST graph1.txt
+ *                java KruskalMST V E
+ *  Dependencies: Graph.java UF.java Bag.java DirectedEdge.java SpanningForest.java
+ *                Subgraph.java PrimMST.java
+ *
+ *  Kruskal's algorithm to compute a minimum spanning forest. Edges are
+ *  taken in order of weight and kept when they join two components.
+ *
+ *  The sort works on one long per edge slot: the weight, mapped to a
+ *  long that orders the same way, with its lowest bits replaced by the
+ *  slot. Arrays.parallelSort sorts these on all processors without
+ *  boxing anything. Weights that only differ in the dropped bits land
+ *  next to each other and are put in order afterwards; for integer
+ *  weights those bits are always zero.
+ *
+ *  Every edge counts as undirected, which agrees with PrimMST on the
+ *  network files, where edges come in pairs. Like PrimMST, only the
+ *  edges of a Subgraph count; given a Graph, those between nodes that
+ *  are up.
+ *
+ *************************************************************************/
+
+import java.util.Arrays;
+
+public class KruskalMST implements SpanningForest {
+    private final Bag<DirectedEdge> mst = new Bag<DirectedEdge>();   // edges in the MST
+    private double weight;                                          // weight of the MST
+
+    public KruskalMST(Graph G) {
+        this(new Subgraph(G));
+    }
+
+    public KruskalMST(Subgraph H) {
+        if (H.isStale()) throw new RuntimeException("Subgraph view is stale, G has new edges or vertices");
+        Graph G = H.graph();
+        G.compact();
+        int V = G.V();
+        int E = G.E();
+        if (E == 0) return;
+
+        // tails[e] = vertex slot e leaves from
+        int[] tails = new int[E];
+        for (int v = 0; v < V; v++)
+            for (int e = G.begin(v), end = G.end(v); e < end; e++)
+                tails[e] = v;
+
+        int bits = 32 - Integer.numberOfLeadingZeros(E - 1);
+        if (bits == 0) bits = 1;
+        long low = (1L << bits) - 1;
+        long[] keys = new long[E];
+        int m = 0;                           // edges in the view
+        boolean dropped = false;             // did any weight lose bits to its slot?
+        for (int e = 0; e < E; e++) {
+            if (!H.hasVertex(tails[e]) || !H.hasVertex(G.to(e)) || !H.hasEdge(e)) continue;
+            long key = order(G.weight(e));
+            if ((key & low) != 0) dropped = true;
+            keys[m++] = (key & ~low) | e;
+        }
+        Arrays.parallelSort(keys, 0, m);
+        if (dropped) untie(G, keys, 0, m, bits);
+
+        UF uf = new UF(V);
+        for (int i = 0, n = 0; i < m && n < V - 1; i++) {
+            int e = (int) (keys[i] & low);
+            int v = tails[e], w = G.to(e);
+            if (uf.connected(v, w)) continue;   // v-w would close a cycle
+            uf.union(v, w);
+            mst.add(new DirectedEdge(v, w, G.weight(e)));
+            weight += G.weight(e);
+            n++;
+        }
+
+        // check optimality conditions
+        assert check(H);
+    }
+
+    // a long that compares like the double x does
+    static long order(double x) {
+        long bits = Double.doubleToLongBits(x);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    // keys[from..to-1] is sorted on all but the low bits of each weight;
+    // put every run that shares the high bits in order of the full weight,
+    // keeping equal weights in slot order
+    static void untie(Graph G, long[] keys, int from, int to, int bits) {
+        long low = (1L << bits) - 1;
+        long[] run = null;
+        for (int lo = from, hi; lo < to; lo = hi) {
+            long high = keys[lo] & ~low;
+            boolean mixed = false;
+            long first = order(G.weight((int) (keys[lo] & low)));
+            for (hi = lo + 1; hi < to && (keys[hi] & ~low) == high; hi++)
+                if (order(G.weight((int) (keys[hi] & low))) != first) mixed = true;
+            if (!mixed) continue;
+
+            // the dropped bits above the position in the run; both fit in bits
+            int n = hi - lo;
+            if (run == null || run.length < n) run = new long[n];
+            for (int i = 0; i < n; i++)
+                run[i] = ((order(G.weight((int) (keys[lo + i] & low))) & low) << bits) | i;
+            Arrays.sort(run, 0, n);
+            long[] slots = Arrays.copyOfRange(keys, lo, hi);
+            for (int i = 0; i < n; i++)
+                keys[lo + i] = slots[(int) (run[i] & low)];
+        }
+    }
+
+    // return iterator of edges in MST
+    public Iterable<DirectedEdge> edges() {
+        return mst;
+    }
+
+    // return weight of MST
+    public double weight() {
+        return weight;
+    }
+
+
+    // check that the MST is a spanning forest; main compares its weight with PrimMST
+    private boolean check(Subgraph H) {
+        Graph G = H.graph();
+        UF uf = new UF(G.V());
+        for (DirectedEdge e : edges()) {
+            if (uf.connected(e.from(), e.to())) {
+                System.err.println("Not a forest");
+                return false;
+            }
+            uf.union(e.from(), e.to());
+        }
+        for (int e = 0; e < G.E(); e++) {
+            int v = G.from(e), w = G.to(e);
+            if (!H.hasVertex(v) || !H.hasVertex(w) || !H.hasEdge(e)) continue;
+            if (!uf.connected(v, w)) {
+                System.err.println("Not a spanning forest");
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    public static void main(String[] args) {
+        Graph G;
+        if (args.length == 1) G = GraphReader.read(args[0]);
+        else                  G = new Graph(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+
+        long start = System.nanoTime();
+        KruskalMST kruskal = new KruskalMST(G);
+        double kruskalTime = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        PrimMST prim = new PrimMST(G);
+        double primTime = (System.nanoTime() - start) / 1e6;
+
+        StdOut.printf("Kruskal: total weight = %.5f in %.1f ms\n", kruskal.weight(), kruskalTime);
+        StdOut.printf("Prim:    total weight = %.5f in %.1f ms\n", prim.weight(), primTime);
+        if (Math.abs(prim.weight() - kruskal.weight()) > 1E-9 * Math.max(1.0, prim.weight()))
+            throw new RuntimeException("Weights differ: " + kruskal.weight() + " vs " + prim.weight());
+        if (G.V() > 10) return;
+        for (DirectedEdge e : kruskal.edges())
+            StdOut.println(e);
+    }
+}
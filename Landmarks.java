@@ -0,0 +1,163 @@
+/*************************************************************************
+ *  Compilation:  javac Landmarks.java
+ *  Execution:    java Landmarks graph1.txt [k]
+ *  Dependencies: Graph.java DijkstraSP.java
+ *
+ *  Preprocessing for ALT search (A*, landmarks, triangle inequality).
+ *  k landmarks are picked far apart and DijkstraSP computes the
+ *  distance from each one to every vertex. For any landmark L the
+ *  triangle inequality gives
+ *
+ *      d(v,t) >= d(L,t) - d(L,v)
+ *
+ *  and when every edge has a twin in the other direction with the
+ *  same weight, as in the network files, also d(v,t) >= d(L,v) - d(L,t).
+ *  AStarSP uses the best of these as its lower bound.
+ *
+ *  The bounds describe the graph as it was when they were computed,
+ *  down nodes included. isStale() tells when the graph has changed
+ *  since; the bounds may then overestimate and have to be rebuilt.
+ *
+ *************************************************************************/
+
+public class Landmarks {
+    private final Graph G;
+    private final int[] landmarks;      // landmarks[i] = vertex of landmark i
+    private final double[] dist;        // dist[v*k + i] = distance from landmark i to v
+    private final int k;
+    private final boolean symmetric;    // does every edge have a twin of the same weight?
+    private final long version;         // G.version() the distances belong to
+
+    // pick up to k landmarks among the nodes that are up
+    public Landmarks(Graph G, int k) {
+        if (k < 1) throw new RuntimeException("Need at least one landmark");
+        this.G = G;
+        this.version = G.version();
+        int V = G.V();
+
+        int up = 0;
+        for (int v = 0; v < V; v++)
+            if (G.checkConnection(v)) up++;
+        k = Math.min(k, up);
+        if ((long) V * k > Integer.MAX_VALUE) throw new RuntimeException("Too many landmarks for " + V + " vertices");
+        this.k = k;
+        landmarks = new int[k];
+        dist = new double[V * k];
+        symmetric = isSymmetric(G);
+
+        // farthest-point selection: start from the vertex farthest from an
+        // arbitrary one, then keep taking the vertex farthest from all
+        // landmarks so far; a vertex none of them reach counts as farthest
+        double[] nearest = new double[V];       // distance from the closest landmark
+        int next = -1;
+        for (int v = 0; v < V && next == -1; v++)
+            if (G.checkConnection(v)) next = v;
+        if (k > 0) next = farthest(new DijkstraSP(G, next), null);
+        for (int v = 0; v < V; v++)
+            nearest[v] = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < k; i++) {
+            landmarks[i] = next;
+            DijkstraSP sp = new DijkstraSP(G, next);
+            for (int v = 0; v < V; v++) {
+                double d = sp.distTo(v);
+                dist[v*k + i] = d;
+                if (d < nearest[v]) nearest[v] = d;
+            }
+            next = farthest(null, nearest);
+        }
+    }
+
+    // the up vertex with the largest distance, from sp or from nearest[];
+    // landmarks themselves have distance 0 and are never picked again
+    // while another vertex is left
+    private int farthest(DijkstraSP sp, double[] nearest) {
+        int best = -1;
+        double max = -1.0;
+        for (int v = 0; v < G.V(); v++) {
+            if (!G.checkConnection(v)) continue;
+            double d = sp != null ? sp.distTo(v) : nearest[v];
+            if (d > max) {
+                max = d;
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    // does every edge v->w have an edge w->v of the same weight? Then the
+    // distance from v to a landmark equals the distance from the landmark to v
+    private static boolean isSymmetric(Graph G) {
+        for (int v = 0; v < G.V(); v++) {
+            for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+                int r = G.slot(G.to(e), v);
+                if (r == -1 || G.weight(r) != G.weight(e)) return false;
+            }
+        }
+        return true;
+    }
+
+    // number of landmarks
+    public int size() {
+        return k;
+    }
+
+    // vertex of landmark i
+    public int landmark(int i) {
+        return landmarks[i];
+    }
+
+    // distance from landmark i to v
+    public double distance(int i, int v) {
+        return dist[v*k + i];
+    }
+
+    // has G changed since the distances were computed?
+    public boolean isStale() {
+        return G.version() != version;
+    }
+
+   /**
+     * Lower bound on the distance from v to t given by landmark i. Infinite
+     * when landmark i proves t cannot be reached from v, 0 when it tells
+     * nothing.
+     */
+    public double lowerBound(int i, int v, int t) {
+        double dv = dist[v*k + i];
+        double dt = dist[t*k + i];
+        double bound = 0.0;
+        // with both distances infinite the difference is NaN and ignored
+        if (dt - dv > bound) bound = dt - dv;
+        if (symmetric && dv - dt > bound) bound = dv - dt;
+        return bound;
+    }
+
+    // lower bound on the distance from v to t using every landmark
+    public double lowerBound(int v, int t) {
+        double bound = 0.0;
+        for (int i = 0; i < k; i++)
+            bound = Math.max(bound, lowerBound(i, v, t));
+        return bound;
+    }
+
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+        int k = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        Landmarks L = new Landmarks(G, k);
+        StdOut.print(L.size() + " landmarks:");
+        for (int i = 0; i < L.size(); i++)
+            StdOut.print(" " + L.landmark(i));
+        StdOut.println();
+
+        // the bounds never exceed the true distances
+        for (int s = 0; s < G.V(); s++) {
+            DijkstraSP sp = new DijkstraSP(G, s);
+            for (int t = 0; t < G.V(); t++) {
+                if (L.lowerBound(s, t) > sp.distTo(t))
+                    throw new RuntimeException("bound " + s + " to " + t + " too large: " + L.lowerBound(s, t) + " > " + sp.distTo(t));
+            }
+        }
+        StdOut.printf("bound 0 to %d: %.2f\n", G.V() - 1, L.lowerBound(0, G.V() - 1));
+    }
+}
@@ -2,26 +2,51 @@
 //Credit to Segwick and Wayne for some of the classes required for this project
 
 import java.util.Scanner;
-import java.util.ArrayList;
 
 public class Network{
 	private static Graph G;
 	private static double pathWeight = 0; //weight of the path
 	private static int startPath = 0; //where the path starts, gets changed from 0
 	private static int pathNumber = 1; //number of path, useful for output
-	private static ArrayList<DirectedEdge> path; //keeps track of each path in recursive loop
+	private static int[] path; //keeps track of the edge slots of each path in recursive loop
+	private static int pathLength = 0; //number of edges currently on path
 	private static boolean[] visited; //needed for path determination so that it doesn't loop itself
+	private static Subgraph active; //nodes that are up while paths are enumerated
+	private static Landmarks landmarks; //distances from landmarks for the alt engine, built on first use
+	private static final int LANDMARKS = 8; //number of landmarks to pick
+	private static ContractionHierarchy hierarchy; //shortcuts for the ch engine, built on first use
+	private static ShortestPathCache trees; //shortest path trees of sources queried more than once
+	private static final int TREES = 16; //most trees kept at once
+	private static AllPairsSP allPairs; //every pairwise distance, built by the apsp engine
+	private static final int ALL_PAIRS_LIMIT = 4096; //largest network the apsp engine takes on
+	private static DynamicSP[] maintained; //trees of the sources named after the input file, repaired after each change
+	private static SpanningForest lastForest; //result of the last M command
+	private static String lastEngine; //engine that computed it
+	private static long lastVersion; //G.version() it was computed for
+	private static DynamicMST spanning; //spanning forest of the nodes that are up for the dynamic engine, built on first use and repaired after each change
 
 	public static void main(String[] args){
 		//read in input file and create graph from it
 		System.out.println("\nINPUT FILE: " + args[0]);
 		System.out.println("-----------------------");
-		In in = new In(args[0]);
-		G = new Graph(in);
+		if(GraphFile.isGraphFile(args[0])){
+			//binary graphs are mapped in place, see GraphFile
+			G = GraphFile.load(args[0]);
+		}else{
+			G = GraphReader.readParallel(args[0], Runtime.getRuntime().availableProcessors());
+		}
+		trees = new ShortestPathCache(G, TREES);
+
+		//any further arguments are sources, such as core routers, whose
+		//shortest paths are kept current through every change
+		maintained = new DynamicSP[args.length - 1];
+		for(int k = 1; k < args.length; k++){
+			maintained[k - 1] = new DynamicSP(G, Integer.parseInt(args[k]));
+		}
 
 		//menu for the options
+		Scanner reader = new Scanner(System.in);
 		while(true){
-			Scanner reader = new Scanner(System.in);
 
 			//read in command and branch to right if statement
 			System.out.print("\nPlease enter a command: ");
@@ -42,29 +67,44 @@ public class Network{
 
 			}else if(option.toUpperCase().equals("M")){
 				//show MST
-				System.out.println("Command M:");
-				System.out.println("----------");
+				String engine = readOption(reader);
 
-				PrimMST mst = new PrimMST(G);
+				System.out.println("Command M" + (engine.isEmpty() ? "" : " " + engine) + ":");
+				System.out.println("----------");
 
-				System.out.println("\nTotal weight = " + mst.weight());
-				System.out.println("\nThe edges in the MST follow: ");
-        		for (DirectedEdge e : mst.edges()){
-            		System.out.println(e);
-            	}
+				//the last result stands as long as the network has not changed
+				SpanningForest mst;
+				if(lastForest != null && lastEngine.equals(engine) && lastVersion == G.version()){
+					mst = lastForest;
+				}else{
+					mst = spanningForest(engine);
+					lastForest = mst;
+					lastEngine = engine;
+					lastVersion = G.version();
+				}
+				if(mst == null){
+					System.out.println("Unknown engine " + engine + ", use prim, kruskal, boruvka, filter or dynamic");
+				}else{
+					System.out.println("\nTotal weight = " + mst.weight());
+					System.out.println("\nThe edges in the MST follow: ");
+        			for (DirectedEdge e : mst.edges()){
+            			System.out.println(e);
+            		}
+				}
 
 			}else if(option.toUpperCase().equals("S")){
 				//display shortest path
 				int i = reader.nextInt();
 				int j = reader.nextInt();
+				String engine = readOption(reader);
 
-				System.out.println("Command S " + i + " " + j + ": ");
+				System.out.println("Command S " + i + " " + j + (engine.isEmpty() ? "" : " " + engine) + ": ");
 				System.out.println("--------------");
 
-				DijkstraSP sp = new DijkstraSP(G, i);
-				
-        		
-            		if (sp.hasPathTo(j)) {
+				ShortestPaths sp = shortestPath(i, j, engine);
+				if(sp == null){
+					System.out.println("Unknown engine " + engine + ", use bidi, dijkstra, radix, delta, apsp, alt or ch");
+				}else if (sp.hasPathTo(j)) {
             			//if there is a path
             			System.out.println("\nShortest path from " + i + " to " + j);
                 		System.out.printf("\tTotal: (%.2f)  \n",sp.distTo(j));
@@ -90,8 +130,10 @@ public class Network{
 				System.out.println("Distinct Paths from " + i + " to " + j +" (differing by at least one edge):\n");
 
 				//setup for the recursive call
+				active = new Subgraph(G);
 				startPath = i;
-				path = new ArrayList<DirectedEdge>();
+				path = new int[G.V()];
+				pathLength = 0;
 				visited = new boolean[G.V()];
 				for(int k = 0; k < G.V(); k++){
 					visited[k] = false;
@@ -120,6 +162,12 @@ public class Network{
 				System.out.println("------------");
 
 				G.downConnect(i);
+				for(DynamicSP sp : maintained){
+					sp.vertexDown(i);
+				}
+				if(spanning != null){
+					spanning.vertexDown(i);
+				}
 				System.out.println("Vertex " + i + " has gone down");
 
 			}else if(option.toUpperCase().equals("U")){
@@ -136,6 +184,12 @@ public class Network{
 				System.out.println("------------");
 
 				G.upConnect(i);
+				for(DynamicSP sp : maintained){
+					sp.vertexUp(i);
+				}
+				if(spanning != null){
+					spanning.vertexUp(i);
+				}
 				System.out.println("Vertex " + i + " is back online");
 
 			}else if(option.toUpperCase().equals("C")){
@@ -149,6 +203,12 @@ public class Network{
 
 				//change the weight of the edge
 				G.changeEdge(i, j, x);
+				for(DynamicSP sp : maintained){
+					sp.edgeChanged(i, j);
+				}
+				if(spanning != null){
+					spanning.edgeChanged(i, j);
+				}
 
 
 			}else if(option.toUpperCase().equals("Q")){
@@ -186,7 +246,13 @@ public class Network{
 					double weight = reader.nextDouble();
 
 					G.addNewEdge(new DirectedEdge(j, i, weight));
+					if(spanning != null){
+						spanning.edgeAdded(j, i, weight);
+					}
             		G.addNewEdge(new DirectedEdge(i, j, weight));
+					if(spanning != null){
+						spanning.edgeAdded(i, j, weight);
+					}
 
             		//stops the addition of new edges
             		System.out.println("Enter \"C\" to continue entering edges for the new vertex. Enter \"Q\"to quit entering edges");
@@ -203,18 +269,119 @@ public class Network{
 		}		
 	}
 
+	//reads the rest of the command line, where commands take an optional engine name
+	private static String readOption(Scanner reader){
+		return reader.nextLine().trim().toLowerCase();
+	}
+
+	//runs the chosen engine for a minimum spanning forest, null if there is no such engine
+	private static SpanningForest spanningForest(String engine){
+		if(engine.isEmpty() || engine.equals("prim")){
+			//grows one tree at a time from a heap
+			return new PrimMST(G);
+		}else if(engine.equals("kruskal")){
+			//takes edges in order of weight after one parallel sort
+			return new KruskalMST(G);
+		}else if(engine.equals("boruvka")){
+			//every component takes its cheapest edge out at once, on all processors
+			return new BoruvkaMST(G);
+		}else if(engine.equals("filter")){
+			//Kruskal that drops heavy edges inside components before sorting them
+			return new FilterKruskalMST(G);
+		}else if(engine.equals("dynamic")){
+			//only the nodes that are up, kept current through every change instead of recomputed
+			if(spanning == null || spanning.isStale()){
+				if(spanning != null){
+					System.out.println("Network changed without the spanning forest being told, recomputing");
+				}
+				spanning = new DynamicMST(G);
+			}
+			return spanning;
+		}
+		return null;
+	}
+
+	//runs the chosen engine for a path from i to j, null if there is no such engine
+	private static ShortestPaths shortestPath(int i, int j, String engine){
+		if(engine.isEmpty()){
+			//the default: the tree of i if it is maintained, the all pairs tables if
+			//they are up to date, a cached tree when i keeps being asked for, otherwise bidi
+			for(DynamicSP sp : maintained){
+				if(sp.source() == i){
+					if(sp.isStale()){
+						sp.refresh();
+					}
+					return sp;
+				}
+			}
+			if(allPairs != null && !allPairs.isStale()){
+				return allPairs.from(i);
+			}
+			ShortestPaths tree = trees.lookup(i);
+			if(tree != null){
+				return tree;
+			}
+			return new BidirectionalDijkstraSP(G, i, j);
+		}else if(engine.equals("bidi")){
+			//searches from both ends
+			return new BidirectionalDijkstraSP(G, i, j);
+		}else if(engine.equals("dijkstra")){
+			//one search from i that stops once j is reached
+			return new DijkstraSP(G, i, j);
+		}else if(engine.equals("radix")){
+			//integer link costs allow the bucket based search
+			if(G.hasIntegerWeights()){
+				return new RadixHeapSP(G, i, j);
+			}
+			System.out.println("Some weights are not integers, using dijkstra");
+			return new DijkstraSP(G, i, j);
+		}else if(engine.equals("delta")){
+			//delta-stepping on every core, for one search over a very large network
+			return new DeltaSteppingSP(G, i);
+		}else if(engine.equals("apsp")){
+			//every pairwise distance at once, after which a plain S is a lookup
+			if(G.V() > ALL_PAIRS_LIMIT){
+				System.out.println("Too many vertices for all pairs, using bidi");
+				return new BidirectionalDijkstraSP(G, i, j);
+			}
+			if(allPairs == null || allPairs.isStale()){
+				allPairs = new AllPairsSP(G);
+			}
+			return allPairs.from(i);
+		}else if(engine.equals("alt")){
+			//A* guided by landmark distances, worth it when many queries run on the same network
+			if(landmarks == null || landmarks.isStale()){
+				if(landmarks != null){
+					System.out.println("Network changed since the landmarks were computed, recomputing");
+				}
+				landmarks = new Landmarks(G, LANDMARKS);
+			}
+			return new AStarSP(G, landmarks, i, j);
+		}else if(engine.equals("ch")){
+			//contraction hierarchy, slow to build but the fastest queries on a network that stays the same
+			if(hierarchy == null || hierarchy.isStale()){
+				if(hierarchy != null){
+					System.out.println("Network changed since the hierarchy was built, rebuilding");
+				}
+				hierarchy = new ContractionHierarchy(G);
+			}
+			return new CHSP(G, hierarchy, i, j);
+		}
+		return null;
+	}
+
 	private static void distinctPaths(int i, int j, int w){
 
 		//check if both the nodes are active or not
 		//crucial to working with nodes up and nodes down
 		//unsure if this had to be added
-		if(G.checkConnection(i) && G.checkConnection(j)){
+		if(active.hasVertex(i) && active.hasVertex(j)){
 
 			//check if there is a complete path
 			if(i == j && pathWeight <= w){
 				System.out.println("Path " + pathNumber + ": Total weight: "+ pathWeight);
-				for(DirectedEdge e : path){
-					System.out.print("\t" + e );
+				for(int k = 0; k < pathLength; k++){
+					System.out.print("\t" + G.edge(path[k]) );
 				}	
 				System.out.println("\n");
 				pathNumber++;
@@ -222,21 +389,25 @@ public class Network{
 
 			//check if the total weight is larger than inputed
 			if(pathWeight <= w){
-				for (DirectedEdge e : G.adj(i)){
+				for (int e = G.begin(i), end = G.end(i); e < end; e++){
+					//skip links that are not part of the active network
+					if(!active.hasVertex(G.to(e)) || !active.hasEdge(e)){
+						continue;
+					}
 					//add the weight
-					pathWeight += e.weight();
+					pathWeight += G.weight(e);
 					//add the edge
-					path.add(e);
+					path[pathLength++] = e;
 					//check off that the node was visited
 					visited[i] = true;
 
 					//call recursively
-					if(visited[e.to()] == false)
-						distinctPaths(e.to(), j, w);
+					if(visited[G.to(e)] == false)
+						distinctPaths(G.to(e), j, w);
 
 					//undo all of the previous adds
-					pathWeight -= e.weight();
-					path.remove(e);
+					pathWeight -= G.weight(e);
+					pathLength--;
 					visited[i] = false;
 				}
 			} else {
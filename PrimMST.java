@@ -5,58 +5,82 @@
 /******************************************************************************
  *  Compilation:  javac PrimMST.java
  *  Execution:    java PrimMST V E
- *  Dependencies: EdgeWeightedGraph.java Edge.java Queue.java IndexMinPQ.java
- *                UF.java
+ *  Dependencies: EdgeWeightedGraph.java Edge.java Queue.java DoubleIndexMinPQ.java
+ *                UF.java SpanningForest.java Subgraph.java
  *
  *  Prim's algorithm to compute a minimum spanning forest.
  *
+ *  Only the vertices and edges of a Subgraph are used; given a Graph,
+ *  that is the nodes that are up, as in DijkstraSP.
+ *
  ******************************************************************************/
 
-public class PrimMST {
-    private DirectedEdge[] edgeTo;        // edgeTo[v] = shortest edge from tree vertex to non-tree vertex
+public class PrimMST implements SpanningForest {
+    private int[] edgeTo;         // edgeTo[v] = slot of shortest edge from tree vertex to non-tree vertex
     private double[] distTo;      // distTo[v] = weight of shortest such edge
     private boolean[] marked;     // marked[v] = true if v on tree, false otherwise
-    private IndexMinPQ<Double> pq;
+    private DoubleIndexMinPQ pq;
+    private Bag<DirectedEdge> mst;   // edges in the MST, built once at the end
+    private double weight;           // weight of the MST, summed once at the end
 
     public PrimMST(Graph G) {
-        edgeTo = new DirectedEdge[G.V()];
+        this(new Subgraph(G));
+    }
+
+    public PrimMST(Subgraph H) {
+        if (H.isStale()) throw new RuntimeException("Subgraph view is stale, G has new edges or vertices");
+        Graph G = H.graph();
+        edgeTo = new int[G.V()];
         distTo = new double[G.V()];
         marked = new boolean[G.V()];
-        pq = new IndexMinPQ<Double>(G.V());
-        for (int v = 0; v < G.V(); v++) distTo[v] = Double.POSITIVE_INFINITY;
+        pq = new DoubleIndexMinPQ(G.V(), DoubleIndexMinPQ.arity(G.V(), G.E()));
+        for (int v = 0; v < G.V(); v++) {
+            distTo[v] = Double.POSITIVE_INFINITY;
+            edgeTo[v] = -1;
+        }
 
         for (int v = 0; v < G.V(); v++)      // run from each vertex to find
-            if (!marked[v]) prim(G, v);      // minimum spanning forest
+            if (!marked[v] && H.hasVertex(v)) prim(H, v);    // minimum spanning forest
+
+        mst = new Bag<DirectedEdge>();
+        for (int v = 0; v < edgeTo.length; v++) {
+            if (edgeTo[v] != -1) {
+                mst.add(G.edge(edgeTo[v]));
+                weight += G.weight(edgeTo[v]);
+            }
+        }
 
         // check optimality conditions
-        assert check(G);
+        assert check(H);
     }
 
-    // run Prim's algorithm in graph G, starting from vertex s
-    private void prim(Graph G, int s) {
+    // run Prim's algorithm in the view H, starting from vertex s
+    private void prim(Subgraph H, int s) {
         distTo[s] = 0.0;
         pq.insert(s, distTo[s]);
         while (!pq.isEmpty()) {
             int v = pq.delMin();
-            scan(G, v);
+            scan(H, v);
         }
     }
 
     // scan vertex v
-    private void scan(Graph G, int v) {
+    private void scan(Subgraph H, int v) {
+        Graph G = H.graph();
         marked[v] = true;
-        for (DirectedEdge e : G.adj(v)) {
-            int w = e.to();
+        for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+            int w = G.to(e);
             if (marked[w]) 
             {
             	continue;         // v-w is obsolete edge
             }
-            if (e.weight() < distTo[w]) {
-                distTo[w] = e.weight();
+            if (!H.hasVertex(w) || !H.hasEdge(e)) continue;      // not in the view
+            if (G.weight(e) < distTo[w]) {
+                distTo[w] = G.weight(e);
                 edgeTo[w] = e;
                 if (pq.contains(w)) 
                 {
-                		pq.change(w, distTo[w]);
+                		pq.decrease(w, distTo[w]);
                 }
                 else              
                 {
@@ -68,28 +92,19 @@ public class PrimMST {
    
     // return iterator of edges in MST
     public Iterable<DirectedEdge> edges() {
-        Bag<DirectedEdge> mst = new Bag<DirectedEdge>();
-        for (int v = 0; v < edgeTo.length; v++) {
-            DirectedEdge e = edgeTo[v];
-            if (e != null) {
-                mst.add(e);
-            }
-        }
         return mst;
     }
 
 
     // return weight of MST
     public double weight() {
-        double weight = 0.0;
-        for (DirectedEdge e : edges())
-            weight += e.weight();
         return weight;
     }
 
 
     // check optimality conditions (takes time proportional to E V lg* V)
-    private boolean check(Graph G) {
+    private boolean check(Subgraph H) {
+        Graph G = H.graph();
 
         // check weight
         double weight = 0.0;
@@ -134,12 +149,16 @@ public class PrimMST {
             }
 
             // check that e is min weight edge in crossing cut
-            for (DirectedEdge f : G.edges()) {
-                int x = f.from(), y = f.to();
-                if (!uf.connected(x, y)) {
-                    if (f.weight() < e.weight()) {
-                        System.err.println("Edge " + f + " violates cut optimality conditions");
-                        return false;
+            for (int x = 0; x < G.V(); x++) {
+                if (!H.hasVertex(x)) continue;
+                for (int f = G.begin(x), end = G.end(x); f < end; f++) {
+                    int y = G.to(f);
+                    if (!H.hasVertex(y) || !H.hasEdge(f)) continue;
+                    if (!uf.connected(x, y)) {
+                        if (G.weight(f) < e.weight()) {
+                            System.err.println("Edge " + G.edge(f) + " violates cut optimality conditions");
+                            return false;
+                        }
                     }
                 }
             }
@@ -0,0 +1,237 @@
+/*************************************************************************
+ *  Compilation:  javac RadixHeapSP.java
+ *  Execution:    java RadixHeapSP graph1.txt
+ *  Dependencies: Graph.java Stack.java DirectedEdge.java ShortestPaths.java
+ *
+ *  Dijkstra's algorithm for graphs whose weights are all nonnegative
+ *  integers, as read from graph1.txt-style files, and small enough that
+ *  V times the largest stays below 2^53. Distances are exact longs, and
+ *  the priority queue exploits the fact that Dijkstra only ever removes
+ *  keys in increasing order:
+ *
+ *    - if the largest weight C is small, Dial's buckets: one bucket per
+ *      distance, C+1 of them used in a circle, O(E + V + D) in total
+ *      for a largest distance D
+ *    - otherwise a radix heap: 65 buckets by the highest bit in which a
+ *      key differs from the last key removed, O(E + V log C) in total
+ *
+ *  Neither needs a decrease-key; a vertex is pushed again when its
+ *  distance drops and the older entry is skipped once it is settled.
+ *
+ *************************************************************************/
+
+import java.util.Arrays;
+
+public class RadixHeapSP implements ShortestPaths {
+    private static final long DIAL_LIMIT = 1 << 16;    // largest weight that uses Dial's buckets
+    private static final long INFINITY = Long.MAX_VALUE;
+
+    private long[] distTo;          // distTo[v] = length of shortest s->v path
+    private int[] edgeTo;           // edgeTo[v] = slot of last edge on shortest s->v path, -1 if none
+    private boolean[] settled;      // settled[v] = is distTo[v] final?
+    private Graph G;                // slots in edgeTo[] refer to G
+
+    public RadixHeapSP(Graph G, int s) {
+        this(G, s, null);
+    }
+
+    // stops as soon as the shortest s->t path is known
+    public RadixHeapSP(Graph G, int s, int t) {
+        this(G, s, new int[] { t });
+    }
+
+    // stops as soon as the shortest paths from s to all of targets are known;
+    // distTo() and pathTo() are then only exact for the targets and for
+    // vertices closer to s than the farthest target. null means every vertex.
+    public RadixHeapSP(Graph G, int s, int[] targets) {
+        if (!G.hasIntegerWeights()) throw new RuntimeException("RadixHeapSP needs nonnegative integer weights that add up exactly");
+        this.G = G;
+        distTo = new long[G.V()];
+        edgeTo = new int[G.V()];
+        settled = new boolean[G.V()];
+        for (int v = 0; v < G.V(); v++) {
+            distTo[v] = INFINITY;
+            edgeTo[v] = -1;
+        }
+        distTo[s] = 0;
+
+        boolean[] isTarget = null;
+        int remaining = 0;              // targets not settled yet
+        if (targets != null) {
+            isTarget = new boolean[G.V()];
+            for (int t : targets) {
+                if (!isTarget[t]) remaining++;
+                isTarget[t] = true;
+            }
+        }
+
+        long max = (long) G.maxWeight();    // kept by G, so a query near s stays cheap
+        Queue pq = max < DIAL_LIMIT ? new Buckets((int) max) : new RadixHeap();
+
+        // settle vertices in order of distance from s
+        pq.push(s, 0);
+        for (int v = pq.pop(); v != -1; v = pq.pop()) {
+            if (settled[v]) continue;                // older entry of a settled vertex
+            settled[v] = true;
+            if (isTarget != null && isTarget[v] && --remaining == 0) break;
+            if (!G.checkConnection(v)) continue;     // down nodes carry no paths
+            for (int e = G.begin(v), end = G.end(v); e < end; e++) {
+                int w = G.to(e);
+                if (!G.checkConnection(w)) continue;
+                long d = distTo[v] + (long) G.weight(e);
+                if (d < distTo[w]) {
+                    distTo[w] = d;
+                    edgeTo[w] = e;
+                    pq.push(w, d);
+                }
+            }
+        }
+    }
+
+    // length of shortest path from s to v
+    public double distTo(int v) {
+        return distTo[v] == INFINITY ? Double.POSITIVE_INFINITY : distTo[v];
+    }
+
+    // is there a path from s to v?
+    public boolean hasPathTo(int v) {
+        return distTo[v] < INFINITY;
+    }
+
+    // shortest path from s to v as an Iterable, null if no such path
+    public Iterable<DirectedEdge> pathTo(int v) {
+        if (!hasPathTo(v)) return null;
+        Stack<DirectedEdge> path = new Stack<DirectedEdge>();
+        for (int e = edgeTo[v]; e != -1; e = edgeTo[G.from(e)]) {
+            path.push(G.edge(e));
+        }
+        return path;
+    }
+
+
+   /**************************************************************
+    * Monotone priority queues of vertices: pop() returns a vertex
+    * with the smallest key, or -1 when empty, and every key pushed
+    * is at least the key of the last vertex popped.
+    **************************************************************/
+    private static abstract class Queue {
+        abstract void push(int v, long key);
+        abstract int pop();
+    }
+
+    // Dial's buckets: the keys on the queue always lie within C of the
+    // last key popped, so C+1 buckets used in a circle hold them all
+    private static class Buckets extends Queue {
+        private final int[][] buckets;
+        private final int[] sizes;
+        private long current;    // key of the bucket being emptied
+        private int N;           // entries on the queue
+
+        Buckets(int C) {
+            buckets = new int[C + 1][];
+            sizes = new int[C + 1];
+        }
+
+        void push(int v, long key) {
+            int b = (int) (key % buckets.length);
+            if (buckets[b] == null) buckets[b] = new int[4];
+            else if (sizes[b] == buckets[b].length) buckets[b] = Arrays.copyOf(buckets[b], 2 * sizes[b]);
+            buckets[b][sizes[b]++] = v;
+            N++;
+        }
+
+        int pop() {
+            if (N == 0) return -1;
+            int b = (int) (current % buckets.length);
+            while (sizes[b] == 0) {
+                current++;
+                b = (int) (current % buckets.length);
+            }
+            N--;
+            return buckets[b][--sizes[b]];
+        }
+    }
+
+    // radix heap: bucket i > 0 holds keys whose highest bit differing from
+    // last is bit i-1, bucket 0 holds keys equal to last
+    private static class RadixHeap extends Queue {
+        private final int[][] vertices = new int[65][];
+        private final long[][] keys = new long[65][];
+        private final int[] sizes = new int[65];
+        private long last;       // last key popped
+
+        RadixHeap() {
+            for (int i = 0; i < 65; i++) {
+                vertices[i] = new int[4];
+                keys[i] = new long[4];
+            }
+        }
+
+        private int bucket(long key) {
+            return key == last ? 0 : 64 - Long.numberOfLeadingZeros(key ^ last);
+        }
+
+        void push(int v, long key) {
+            int b = bucket(key);
+            if (sizes[b] == vertices[b].length) {
+                vertices[b] = Arrays.copyOf(vertices[b], 2 * sizes[b]);
+                keys[b] = Arrays.copyOf(keys[b], 2 * sizes[b]);
+            }
+            vertices[b][sizes[b]] = v;
+            keys[b][sizes[b]] = key;
+            sizes[b]++;
+        }
+
+        int pop() {
+            if (sizes[0] == 0) {
+                int i = 1;
+                while (i < 65 && sizes[i] == 0) i++;
+                if (i == 65) return -1;
+
+                // the smallest key in bucket i becomes last; every entry of
+                // bucket i then moves to a lower bucket
+                long min = keys[i][0];
+                for (int j = 1; j < sizes[i]; j++)
+                    min = Math.min(min, keys[i][j]);
+                last = min;
+                int n = sizes[i];
+                sizes[i] = 0;
+                for (int j = 0; j < n; j++)
+                    push(vertices[i][j], keys[i][j]);
+            }
+            return vertices[0][--sizes[0]];
+        }
+    }
+
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+
+        // compare with DijkstraSP from every source
+        for (int s = 0; s < G.V(); s++) {
+            RadixHeapSP sp = new RadixHeapSP(G, s);
+            DijkstraSP check = new DijkstraSP(G, s);
+            for (int v = 0; v < G.V(); v++) {
+                if (sp.distTo(v) != check.distTo(v))
+                    throw new RuntimeException("distance " + s + " to " + v + " differs: " + sp.distTo(v) + " vs " + check.distTo(v));
+            }
+        }
+
+        int s = 0;
+        RadixHeapSP sp = new RadixHeapSP(G, s);
+        StdOut.println("Shortest paths from " + s);
+        StdOut.println("------------------------");
+        for (int v = 0; v < G.V(); v++) {
+            if (sp.hasPathTo(v)) {
+                StdOut.printf("%d to %d (%.2f)  ", s, v, sp.distTo(v));
+                for (DirectedEdge e : sp.pathTo(v)) {
+                    StdOut.print(e + "   ");
+                }
+                StdOut.println();
+            }
+            else {
+                StdOut.printf("%d to %d         no path\n", s, v);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*************************************************************************
+ *  Compilation:  javac ShortestPathCache.java
+ *  Execution:    java ShortestPathCache graph1.txt
+ *  Dependencies: Graph.java DijkstraSP.java
+ *
+ *  Least recently used cache of shortest path trees, keyed by source.
+ *  A tree answers every query from its source, so when queries keep
+ *  coming from a few sources each one is computed once instead of
+ *  once per query.
+ *
+ *  Every tree has V entries, so bounding the number of trees bounds the
+ *  memory. To keep one-off sources from pushing out the busy ones, a
+ *  source only gets a tree the second time lookup() sees it while it
+ *  is still among the recently seen sources.
+ *
+ *  Trees are only valid for the graph they were computed on; when
+ *  G.version() moves, every tree is dropped on the next lookup.
+ *
+ *************************************************************************/
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ShortestPathCache {
+    private final Graph G;
+    private final LRU<DijkstraSP> trees;     // source -> its shortest path tree
+    private final LRU<Boolean> seen;         // sources looked up recently
+    private long version;                    // G.version() the trees belong to
+    private long hits;
+    private long misses;
+
+    // cache at most capacity trees
+    public ShortestPathCache(Graph G, int capacity) {
+        if (capacity < 1) throw new RuntimeException("Cache needs room for at least one tree");
+        this.G = G;
+        this.version = G.version();
+        trees = new LRU<DijkstraSP>(capacity);
+        seen = new LRU<Boolean>(4 * capacity);
+    }
+
+    // LinkedHashMap in access order, dropping the eldest entry when full
+    private static class LRU<Value> extends LinkedHashMap<Integer, Value> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        LRU(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<Integer, Value> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    // drop everything computed on an older version of G
+    private void validate() {
+        if (G.version() != version) {
+            trees.clear();
+            version = G.version();
+        }
+    }
+
+   /**
+     * The shortest path tree from s: the cached one, a new one if s was
+     * looked up recently, or null the first time s comes along.
+     */
+    public synchronized DijkstraSP lookup(int s) {
+        validate();
+        DijkstraSP sp = trees.get(s);
+        if (sp != null) {
+            hits++;
+            return sp;
+        }
+        misses++;
+        if (seen.remove(s) == null) {
+            seen.put(s, Boolean.TRUE);
+            return null;
+        }
+        sp = new DijkstraSP(G, s);
+        trees.put(s, sp);
+        return sp;
+    }
+
+   /**
+     * The shortest path tree from s, computed and cached if it is not
+     * cached already.
+     */
+    public synchronized DijkstraSP tree(int s) {
+        validate();
+        DijkstraSP sp = trees.get(s);
+        if (sp != null) {
+            hits++;
+            return sp;
+        }
+        misses++;
+        sp = new DijkstraSP(G, s);
+        trees.put(s, sp);
+        return sp;
+    }
+
+    // number of trees cached
+    public synchronized int size() {
+        validate();
+        return trees.size();
+    }
+
+    // lookups answered from the cache
+    public synchronized long hits() {
+        return hits;
+    }
+
+    // lookups that were not
+    public synchronized long misses() {
+        return misses;
+    }
+
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+        ShortestPathCache cache = new ShortestPathCache(G, 2);
+
+        // sources 0 and 1 come back, the others do not
+        int[] sources = { 0, 1, 0, 2, 1, 0, 3, 0, 1, 4, 0 };
+        for (int s : sources) {
+            DijkstraSP sp = cache.lookup(s);
+            StdOut.println("lookup " + s + (sp == null ? ": first time" : ": tree"));
+        }
+        StdOut.println(cache.size() + " trees, " + cache.hits() + " hits, " + cache.misses() + " misses");
+
+        // a change makes every tree stale
+        G.downConnect(G.V() - 1);
+        StdOut.println("after downConnect: " + cache.size() + " trees");
+    }
+}
@@ -0,0 +1,20 @@
+/*************************************************************************
+ *  Compilation:  javac ShortestPaths.java
+ *
+ *  Single-source shortest paths, whichever algorithm computed them.
+ *  Lets Network pick an engine per query and print the result the
+ *  same way.
+ *
+ *************************************************************************/
+
+public interface ShortestPaths {
+
+    // length of shortest path from the source to v
+    public double distTo(int v);
+
+    // is there a path from the source to v?
+    public boolean hasPathTo(int v);
+
+    // shortest path from the source to v as an Iterable, null if no such path
+    public Iterable<DirectedEdge> pathTo(int v);
+}
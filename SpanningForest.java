@@ -0,0 +1,17 @@
+/*************************************************************************
+ *  Compilation:  javac SpanningForest.java
+ *
+ *  Minimum spanning forest, whichever algorithm computed it. Lets
+ *  Network pick an engine for the M command and print the result the
+ *  same way.
+ *
+ *************************************************************************/
+
+public interface SpanningForest {
+
+    // edges in the forest as an Iterable
+    public Iterable<DirectedEdge> edges();
+
+    // total weight of the forest
+    public double weight();
+}
@@ -0,0 +1,124 @@
+/*************************************************************************
+ *  Compilation:  javac Subgraph.java
+ *  Execution:    java Subgraph graph1.txt
+ *  Dependencies: Graph.java DijkstraSP.java PrimMST.java DirectedEdge.java
+ *
+ *  A view of part of a Graph: the vertices and edge slots that are in it
+ *  are bits in two masks, and the graph itself is shared, not copied.
+ *  An edge is in the view when its slot is and both its ends are. new
+ *  Subgraph(G) holds the nodes that are up and every edge between them,
+ *  the active network; hideVertex() and hideEdge() then take away more,
+ *  for example to ask what happens when a link fails. The MST engines
+ *  read every edge as undirected, so a link is hidden from them with
+ *  hideEdge(v, w), which takes out both directions; hideEdge(e) takes
+ *  out one slot only.
+ *
+ *  The engines test the bits in their inner loops; the class is final
+ *  and the tests are a shift and a mask, so they cost about as much as
+ *  reading a boolean[].
+ *
+ *  The vertex mask is taken from G when the view is made and does not
+ *  follow later downConnect() or upConnect() calls. The edge mask names
+ *  slots, which move when G gets new edges or vertices; the view is then
+ *  stale, and the engines refuse it rather than read the wrong edges.
+ *  Weight changes leave a view as good as it was. A view must not change
+ *  while an engine runs on it.
+ *
+ *************************************************************************/
+
+import java.util.Arrays;
+
+public final class Subgraph {
+    private final Graph G;
+    private final long[] vertices;       // bit v of vertices[v >>> 6] is set when v is in the view
+    private long[] edges;                // bit e of edges[e >>> 6] is set when slot e is, null while all are
+    private final int V, E;              // size of G when the masks were taken
+
+    // the nodes of G that are up, and every edge between them
+    public Subgraph(Graph G) {
+        this.G = G;
+        G.compact();                     // fix the slots the edge mask will name
+        int V = G.V();
+        vertices = new long[(V + 63) >>> 6];
+        for (int v = 0; v < V; v++)
+            if (G.checkConnection(v)) vertices[v >>> 6] |= 1L << v;
+        this.V = V;
+        E = G.E();
+    }
+
+    // the graph the view looks at
+    public Graph graph() {
+        return G;
+    }
+
+    // is v in the view?
+    public boolean hasVertex(int v) {
+        return (vertices[v >>> 6] & (1L << v)) != 0;
+    }
+
+    // is slot e in the view? Its ends are tested with hasVertex()
+    public boolean hasEdge(int e) {
+        return edges == null || (edges[e >>> 6] & (1L << e)) != 0;
+    }
+
+    // take v and its edges out of the view
+    public void hideVertex(int v) {
+        vertices[v >>> 6] &= ~(1L << v);
+    }
+
+    // put v back, with those of its edges whose other end is in the view
+    public void showVertex(int v) {
+        vertices[v >>> 6] |= 1L << v;
+    }
+
+    // take the edge in slot e out of the view
+    public void hideEdge(int e) {
+        if (edges == null) {
+            edges = new long[(G.E() + 63) >>> 6];
+            Arrays.fill(edges, -1L);
+        }
+        edges[e >>> 6] &= ~(1L << e);
+    }
+
+    // take every edge between v and w out of the view, in both directions
+    public void hideEdge(int v, int w) {
+        if (isStale()) throw new RuntimeException("Subgraph view is stale, G has new edges or vertices");
+        for (int e = G.begin(v), end = G.end(v); e < end; e++)
+            if (G.to(e) == w) hideEdge(e);
+        for (int e = G.begin(w), end = G.end(w); e < end; e++)
+            if (G.to(e) == v) hideEdge(e);
+    }
+
+    // put the edge in slot e back
+    public void showEdge(int e) {
+        if (edges != null) edges[e >>> 6] |= 1L << e;
+    }
+
+    // number of vertices in the view
+    public int vertexCount() {
+        int n = 0;
+        for (long word : vertices)
+            n += Long.bitCount(word);
+        return n;
+    }
+
+    // have the slots of G moved since the view was taken?
+    public boolean isStale() {
+        return G.V() != V || G.E() != E;
+    }
+
+
+    public static void main(String[] args) {
+        Graph G = GraphReader.read(args[0]);
+        Subgraph H = new Subgraph(G);
+        StdOut.println(H.vertexCount() + " of " + G.V() + " vertices up");
+        StdOut.println("MST weight " + new PrimMST(H).weight() + ", 0 to 1 in " + new DijkstraSP(H, 0).distTo(1));
+
+        // the same network without the first edge out of 0 and without its last vertex
+        int w = G.to(G.begin(0));
+        H.hideEdge(0, w);
+        H.hideVertex(G.V() - 1);
+        StdOut.println("without 0-" + w + " and " + (G.V() - 1) + ": " + H.vertexCount() + " vertices");
+        StdOut.println("MST weight " + new PrimMST(H).weight() + ", 0 to 1 in " + new DijkstraSP(H, 0).distTo(1));
+    }
+}